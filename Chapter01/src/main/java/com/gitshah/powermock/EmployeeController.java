@@ -11,8 +11,19 @@ package com.gitshah.powermock;
  */
 public class EmployeeController {
 
+    /**
+     * How far ahead the headcount is projected.
+     */
+    private static final long PROJECTION_HORIZON_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
     private EmployeeService employeeService;
 
+    /**
+     * The recorded headcount snapshots,
+     * null when the projection assumes a fixed growth.
+     */
+    private volatile HeadcountHistory headcountHistory;
+
     public EmployeeController(EmployeeService employeeService) {
         this.employeeService = employeeService;
     }
@@ -23,15 +34,45 @@ public class EmployeeController {
      * Let's say the company is growing by 20% every year,
      * then the project count of employees is 20% more than
      * the actual count of employees in the system.
+     * Once a headcount history with at least two snapshots is in use,
+     * the count a year from now is projected from its trend instead,
+     * without asking the service.
      * We will also round it off to the ceiling value.
      * @return Total number of projected employees in the system.
      */
     public int getProjectedEmployeeCount() {
+        final HeadcountHistory history = headcountHistory;
+        if (history != null && history.size() >= 2) {
+            final double projected = history.project(System.currentTimeMillis() + PROJECTION_HORIZON_MILLIS);
+            return (int) Math.ceil(Math.max(projected, 0));
+        }
+
         final int actualEmployeeCount = employeeService.getEmployeeCount();
 
         return (int) Math.ceil(actualEmployeeCount * 1.2);
     }
 
+    /**
+     * Projects the employee count from the snapshots recorded in a history.
+     * @param headcountHistory the history to record snapshots in and project from.
+     */
+    public void useHeadcountHistory(HeadcountHistory headcountHistory) {
+        this.headcountHistory = headcountHistory;
+    }
+
+    /**
+     * Records the current employee count in the headcount history.
+     * Meant to be called periodically, for instance once a day.
+     * @throws IllegalStateException when no headcount history is in use.
+     */
+    public void recordEmployeeCountSnapshot() {
+        final HeadcountHistory history = headcountHistory;
+        if (history == null) {
+            throw new IllegalStateException("No headcount history in use");
+        }
+        history.record(System.currentTimeMillis(), employeeService.getEmployeeCount());
+    }
+
     /**
      * This method saves the employee instance.
      * It delegates this task to the employee service.
@@ -0,0 +1,141 @@
+package com.gitshah.powermock;
+
+/**
+ * A fixed size ring buffer of headcount snapshots
+ * with a least squares trend fitted over them.
+ * The sums the fit needs are updated as snapshots are recorded
+ * and drop out of the ring, so recording a snapshot and projecting
+ * the headcount both take constant time.
+ * Time is measured in days since the oldest snapshot of the ring;
+ * the sums are rebuilt from the ring every time it wraps around
+ * to move that origin forward and shed accumulated rounding error.
+ */
+public class HeadcountHistory {
+
+    /**
+     * The shape of the trend fitted over the snapshots.
+     */
+    public enum Trend {
+
+        /**
+         * The headcount grows by the same number of employees per day.
+         */
+        LINEAR,
+
+        /**
+         * The headcount grows by the same percentage per day,
+         * fitted as a straight line over the log of the headcount.
+         */
+        EXPONENTIAL
+    }
+
+    private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000.0;
+
+    private final Trend trend;
+    private final long[] timestamps;
+    private final int[] counts;
+
+    private int size;
+    private int next;
+    private int recordedSinceRebuild;
+    private long origin;
+
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+
+    /**
+     * The constructor that sizes the ring.
+     * @param capacity the number of most recent snapshots the trend is fitted over.
+     * @param trend the shape of the trend.
+     */
+    public HeadcountHistory(final int capacity, final Trend trend) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+        }
+        this.trend = trend;
+        this.timestamps = new long[capacity];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Records a headcount snapshot, replacing the oldest one when the ring is full.
+     * Snapshots are expected in time order.
+     * @param timestampMillis when the headcount was taken.
+     * @param count the headcount.
+     */
+    public synchronized void record(final long timestampMillis, final int count) {
+        if (size == 0) {
+            origin = timestampMillis;
+        }
+        if (size == counts.length) {
+            accumulate(timestamps[next], counts[next], -1);
+        } else {
+            size++;
+        }
+        timestamps[next] = timestampMillis;
+        counts[next] = count;
+        accumulate(timestampMillis, count, 1);
+        next = (next + 1) % counts.length;
+
+        if (++recordedSinceRebuild == counts.length) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Projects the headcount at a point in time from the fitted trend.
+     * @param timestampMillis the time to project the headcount at.
+     * @return the projected headcount.
+     * @throws IllegalStateException when fewer than two snapshots were recorded.
+     */
+    public synchronized double project(final long timestampMillis) {
+        if (size < 2) {
+            throw new IllegalStateException("At least two snapshots are needed, got " + size);
+        }
+        final double denominator = size * sumXX - sumX * sumX;
+        final double slope = denominator == 0 ? 0 : (size * sumXY - sumX * sumY) / denominator;
+        final double intercept = (sumY - slope * sumX) / size;
+        final double y = intercept + slope * daysSinceOrigin(timestampMillis);
+        return trend == Trend.EXPONENTIAL ? Math.exp(y) : y;
+    }
+
+    /**
+     * Getter for the size.
+     * @return the number of snapshots in the ring.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void accumulate(final long timestampMillis, final int count, final int sign) {
+        final double x = daysSinceOrigin(timestampMillis);
+        final double y = trend == Trend.EXPONENTIAL ? Math.log(Math.max(count, 1)) : count;
+        sumX += sign * x;
+        sumY += sign * y;
+        sumXX += sign * x * x;
+        sumXY += sign * x * y;
+    }
+
+    /**
+     * Moves the origin to the oldest snapshot and recomputes the sums from the ring.
+     */
+    private void rebuild() {
+        recordedSinceRebuild = 0;
+        sumX = 0;
+        sumY = 0;
+        sumXX = 0;
+        sumXY = 0;
+        final int oldest = size == counts.length ? next : 0;
+        origin = timestamps[oldest];
+        for (int i = 0; i < size; i++) {
+            final int slot = (oldest + i) % counts.length;
+            accumulate(timestamps[slot], counts[slot], 1);
+        }
+    }
+
+    private double daysSinceOrigin(final long timestampMillis) {
+        return (timestampMillis - origin) / MILLIS_PER_DAY;
+    }
+}
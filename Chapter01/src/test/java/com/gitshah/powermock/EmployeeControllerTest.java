@@ -94,4 +94,38 @@ public class EmployeeControllerTest {
         //saveEmployee method on the mocked service instance.
         Mockito.verify(mock).saveEmployee(employee);
     }
+
+    @Test
+    public void shouldProjectTheCountOfEmployeesFromTheRecordedHeadcountTrend() {
+        EmployeeService mock = PowerMockito.mock(EmployeeService.class);
+        PowerMockito.when(mock.getEmployeeCount()).thenReturn(300);
+
+        final long year = 365L * 24 * 60 * 60 * 1000;
+        final long now = System.currentTimeMillis();
+        HeadcountHistory history = new HeadcountHistory(12, HeadcountHistory.Trend.LINEAR);
+        history.record(now - 2 * year, 100);
+        history.record(now - year, 200);
+
+        EmployeeController employeeController = new EmployeeController(mock);
+        employeeController.useHeadcountHistory(history);
+        employeeController.recordEmployeeCountSnapshot();
+
+        //Growing by 100 employees a year, allowing for the clock moving on.
+        Assert.assertEquals(400, employeeController.getProjectedEmployeeCount(), 1);
+        Mockito.verify(mock, Mockito.times(1)).getEmployeeCount();
+    }
+
+    @Test
+    public void shouldFitTheHeadcountTrendOverTheMostRecentSnapshotsOnly() {
+        final long day = 24L * 60 * 60 * 1000;
+        HeadcountHistory history = new HeadcountHistory(3, HeadcountHistory.Trend.EXPONENTIAL);
+        history.record(0, 5000);
+        history.record(day, 10);
+        history.record(2 * day, 20);
+        history.record(3 * day, 40);
+
+        //The first snapshot dropped out of the ring, leaving a doubling every day.
+        Assert.assertEquals(3, history.size());
+        Assert.assertEquals(80, history.project(4 * day), 0.001);
+    }
 }
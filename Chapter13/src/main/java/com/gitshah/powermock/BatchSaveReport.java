@@ -0,0 +1,103 @@
+package com.gitshah.powermock;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of EmployeeService.saveEmployees.
+ * Holds the number of employees created and updated
+ * along with every employee that could not be saved
+ * and every created employee that could not be welcomed.
+ */
+public class BatchSaveReport {
+
+    private int createdCount;
+    private int updatedCount;
+
+    /**
+     * The employees that failed to save, in input order,
+     * mapped to the exception that made them fail.
+     */
+    private final Map<Employee, Exception> failures = new LinkedHashMap<Employee, Exception>();
+
+    /**
+     * The created employees whose welcome email failed,
+     * mapped to the exception that made it fail.
+     */
+    private final Map<Employee, Exception> welcomeEmailFailures = new LinkedHashMap<Employee, Exception>();
+
+    /**
+     * Records that an employee was created.
+     */
+    void created() {
+        createdCount++;
+    }
+
+    /**
+     * Records that an employee was updated.
+     */
+    void updated() {
+        updatedCount++;
+    }
+
+    /**
+     * Records that an employee could not be saved.
+     * @param employee the employee that failed.
+     * @param cause the reason it failed.
+     */
+    void failed(final Employee employee, final Exception cause) {
+        failures.put(employee, cause);
+    }
+
+    /**
+     * Records that a created employee could not be welcomed.
+     * @param employee the employee that was created.
+     * @param cause the reason the welcome email failed.
+     */
+    void welcomeEmailFailed(final Employee employee, final Exception cause) {
+        welcomeEmailFailures.put(employee, cause);
+    }
+
+    /**
+     * Getter for the createdCount.
+     * @return the number of employees created.
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Getter for the updatedCount.
+     * @return the number of employees updated.
+     */
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    /**
+     * Getter for the failureCount.
+     * @return the number of employees that could not be saved.
+     */
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    /**
+     * Getter for the failures.
+     * @return the employees that could not be saved
+     * mapped to the exception that made them fail.
+     */
+    public Map<Employee, Exception> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Getter for the welcomeEmailFailures.
+     * @return the created employees whose welcome email failed
+     * mapped to the exception that made it fail.
+     */
+    public Map<Employee, Exception> getWelcomeEmailFailures() {
+        return Collections.unmodifiableMap(welcomeEmailFailures);
+    }
+}
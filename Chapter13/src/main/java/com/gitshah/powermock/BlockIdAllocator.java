@@ -0,0 +1,131 @@
+package com.gitshah.powermock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The hi/lo employee id allocator.
+ * Ids are reserved from the IdBlockSource a block at a time
+ * and handed out from an AtomicLong without taking a lock.
+ * Only the thread that finds the current block exhausted
+ * goes back to the IdBlockSource for the next one.
+ */
+public class BlockIdAllocator {
+
+    /**
+     * The block size used when none is given.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    /**
+     * The source that reserves new blocks.
+     */
+    private final IdBlockSource blockSource;
+
+    /**
+     * The number of ids reserved per block.
+     */
+    private final int blockSize;
+
+    /**
+     * The block ids are currently handed out from.
+     */
+    private volatile Block current = new Block(0, 0);
+
+    /**
+     * The constructor that uses the default block size.
+     * @param blockSource the source to reserve blocks from.
+     */
+    public BlockIdAllocator(final IdBlockSource blockSource) {
+        this(blockSource, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * The constructor that takes in the block size.
+     * @param blockSource the source to reserve blocks from.
+     * @param blockSize the number of ids to reserve per block.
+     */
+    public BlockIdAllocator(final IdBlockSource blockSource, final int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.blockSource = blockSource;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Hands out the next employee id.
+     * @return the next unused employee id.
+     */
+    public int nextId() {
+        while (true) {
+            final Block block = current;
+            final long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return toEmployeeId(id);
+            }
+            reserveNextBlock(block);
+        }
+    }
+
+    /**
+     * Reserves a contiguous range of ids in one go,
+     * straight from the IdBlockSource.
+     * @param count the number of ids to reserve.
+     * @return the first id of the range [first, first + count).
+     */
+    public int reserveIds(final int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Id count must be positive: " + count);
+        }
+        final long first = blockSource.reserveBlock(count);
+        toEmployeeId(first + count - 1);
+        return toEmployeeId(first);
+    }
+
+    /**
+     * Getter for the blockSize.
+     * @return the number of ids reserved per block.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Replaces the exhausted block with a freshly reserved one,
+     * unless another thread has already done so.
+     * @param exhausted the block the caller found exhausted.
+     */
+    private synchronized void reserveNextBlock(final Block exhausted) {
+        if (current != exhausted) {
+            return;
+        }
+        final long first = blockSource.reserveBlock(blockSize);
+        current = new Block(first, first + blockSize);
+    }
+
+    /**
+     * Narrows the allocated id to the int used by Employee.
+     * @param id the allocated id.
+     * @return the id as an int.
+     */
+    private static int toEmployeeId(final long id) {
+        if (id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Employee id space exhausted at " + id);
+        }
+        return (int) id;
+    }
+
+    /**
+     * A reserved range of ids, [next, end).
+     */
+    private static final class Block {
+
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(final long first, final long end) {
+            this.next = new AtomicLong(first);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.gitshah.powermock;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of a BulkSalaryIncrement.
+ * Holds the number of employees incremented
+ * along with every employee that could not be.
+ */
+public class BulkIncrementReport {
+
+    private final int totalCount;
+    private int incrementedCount;
+
+    /**
+     * The employees that failed to be incremented,
+     * mapped to the exception that made them fail.
+     */
+    private final Map<Employee, Exception> failures = new LinkedHashMap<Employee, Exception>();
+
+    /**
+     * The constructor that takes in the number of employees to increment.
+     * @param totalCount the number of employees to increment.
+     */
+    BulkIncrementReport(final int totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * Records the outcome of one chunk of employees.
+     * @param incremented the number of employees of the chunk incremented.
+     * @param chunkFailures the employees of the chunk that failed.
+     */
+    synchronized void chunkDone(final int incremented, final Map<Employee, Exception> chunkFailures) {
+        incrementedCount += incremented;
+        failures.putAll(chunkFailures);
+    }
+
+    /**
+     * Getter for the totalCount.
+     * @return the number of employees the increment was given to.
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Getter for the incrementedCount.
+     * @return the number of employees incremented.
+     */
+    public synchronized int getIncrementedCount() {
+        return incrementedCount;
+    }
+
+    /**
+     * Getter for the failureCount.
+     * @return the number of employees that could not be incremented.
+     */
+    public synchronized int getFailureCount() {
+        return failures.size();
+    }
+
+    /**
+     * Getter for the failures.
+     * @return the employees that could not be incremented
+     * mapped to the exception that made them fail.
+     */
+    public synchronized Map<Employee, Exception> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<Employee, Exception>(failures));
+    }
+
+    /**
+     * Checks whether every employee was incremented.
+     * @return true if no employee failed, false otherwise.
+     */
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+}
@@ -0,0 +1,136 @@
+package com.gitshah.powermock;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives a salary increment to a list of employees in parallel.
+ * The list is split fork/join style into chunks that are incremented
+ * and updated independently; an employee that fails to update gets
+ * its old salary and dirty fields back, without its department ever
+ * hearing of the raise, and is reported, the rest carry on.
+ * Salaries are computed in whole currency units with integer math,
+ * rounding half away from zero, so repeated increments do not drift
+ * the way double arithmetic would.
+ */
+public class BulkSalaryIncrement {
+
+    /**
+     * The default number of employees incremented by one task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private final List<Employee> employees;
+    private final int percentage;
+    private final int chunkSize;
+    private final SalaryIncrementProgressListener progressListener;
+
+    private final AtomicInteger processedCount = new AtomicInteger();
+
+    /**
+     * The constructor that describes the increment.
+     * @param employees the employees to increment, not to be modified while the increment runs.
+     * @param percentage the percentage to increment salaries by, -100 or more.
+     * @param chunkSize the number of employees incremented by one task.
+     * @param progressListener notified after every chunk, null for none.
+     */
+    public BulkSalaryIncrement(final List<Employee> employees, final int percentage, final int chunkSize,
+                               final SalaryIncrementProgressListener progressListener) {
+        if (percentage < -100) {
+            throw new IllegalArgumentException("Percentage must be -100 or more: " + percentage);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.employees = employees;
+        this.percentage = percentage;
+        this.chunkSize = chunkSize;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Computes an incremented salary.
+     * @param salary the current salary.
+     * @param percentage the percentage to increment by.
+     * @return the salary increased by the percentage, rounded half away from zero.
+     * @throws ArithmeticException when the result does not fit in a long.
+     */
+    public static long incrementedSalary(final long salary, final int percentage) {
+        final long scaled = Math.multiplyExact(salary, (long) percentage);
+        long increment = scaled / 100;
+        if (Math.abs(scaled % 100) >= 50) {
+            increment += Long.signum(scaled);
+        }
+        return Math.addExact(salary, increment);
+    }
+
+    /**
+     * Runs the increment and waits for it to finish.
+     * @param pool the pool to run the chunks in.
+     * @return the report of which employees were incremented and which failed.
+     */
+    public BulkIncrementReport run(final ForkJoinPool pool) {
+        final BulkIncrementReport report = new BulkIncrementReport(employees.size());
+        if (!employees.isEmpty()) {
+            pool.invoke(new Chunk(0, employees.size(), report));
+        }
+        return report;
+    }
+
+    /**
+     * Increments the employees in one chunk and records the outcome.
+     */
+    private void increment(final int from, final int to, final BulkIncrementReport report) {
+        final Map<Employee, Exception> failures = new LinkedHashMap<Employee, Exception>();
+        int incremented = 0;
+        for (int i = from; i < to; i++) {
+            final Employee employee = employees.get(i);
+            try {
+                employee.updateSalary(incrementedSalary(employee.getSalary(), percentage));
+                incremented++;
+            } catch (Exception e) {
+                failures.put(employee, e);
+            }
+        }
+        report.chunkDone(incremented, failures);
+
+        final int processed = processedCount.addAndGet(to - from);
+        if (progressListener != null) {
+            progressListener.progressed(processed, employees.size());
+        }
+    }
+
+    /**
+     * Splits its range of employees in half, on chunk boundaries,
+     * until it is no bigger than a chunk, then increments it.
+     */
+    private final class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final BulkIncrementReport report;
+
+        private Chunk(final int from, final int to, final BulkIncrementReport report) {
+            this.from = from;
+            this.to = to;
+            this.report = report;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                increment(from, to, report);
+                return;
+            }
+            final int chunks = (to - from + chunkSize - 1) / chunkSize;
+            final int middle = from + chunks / 2 * chunkSize;
+            invokeAll(new Chunk(from, middle, report), new Chunk(middle, to, report));
+        }
+    }
+}
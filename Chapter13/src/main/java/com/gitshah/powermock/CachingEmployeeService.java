@@ -0,0 +1,291 @@
+package com.gitshah.powermock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An EmployeeService that serves email lookups through
+ * a bounded read-through WTinyLfuCache in front of another EmployeeService.
+ * Misses are cached too, so repeated checks for a free email do not
+ * reach the delegate either. Saving an employee through this service
+ * drops the cached lookup of its email, all other calls are passed on as is.
+ * Employees written to the repository directly, such as by Employee.update(),
+ * drop their cached lookups too once the repository in use is wrapped
+ * with invalidatingRepository.
+ * Every public method of EmployeeService is overridden,
+ * so nothing runs against the unused state this service inherits.
+ */
+public class CachingEmployeeService extends EmployeeService {
+
+    /**
+     * Cached in place of a null lookup result.
+     */
+    private static final Employee NOT_FOUND = new Employee();
+
+    /**
+     * The service lookups are loaded from and calls are passed on to.
+     */
+    private final EmployeeService delegate;
+
+    /**
+     * The cache of lookups by normalized email.
+     */
+    private final WTinyLfuCache<String, Employee> cache;
+
+    /**
+     * The constructor that wraps a service.
+     * @param delegate the service to load lookups from.
+     * @param maximumSize the maximum number of emails cached.
+     * @param expireAfterWrite how long a lookup is served from the cache.
+     * @param unit the unit of expireAfterWrite.
+     */
+    public CachingEmployeeService(final EmployeeService delegate, final int maximumSize,
+                                  final long expireAfterWrite, final TimeUnit unit) {
+        super(null, null, null);
+        this.delegate = delegate;
+        this.cache = new WTinyLfuCache<String, Employee>(new WTinyLfuCache.Loader<String, Employee>() {
+            @Override
+            public Employee load(final String email) {
+                final Employee employee = delegate.findEmployeeByEmail(email);
+                return employee == null ? NOT_FOUND : employee;
+            }
+        }, maximumSize, expireAfterWrite, unit);
+    }
+
+    @Override
+    public int getEmployeeCount() {
+        return delegate.getEmployeeCount();
+    }
+
+    @Override
+    public void useEmployeeCounter(EmployeeCounter employeeCounter) {
+        delegate.useEmployeeCounter(employeeCounter);
+    }
+
+    @Override
+    public EmployeeCounter getEmployeeCounter() {
+        return delegate.getEmployeeCounter();
+    }
+
+    @Override
+    public boolean giveIncrementToAllEmployeesOf(int percentage) {
+        return delegate.giveIncrementToAllEmployeesOf(percentage);
+    }
+
+    @Override
+    public BulkIncrementReport giveIncrementTo(List<Employee> employees, int percentage,
+                                               SalaryIncrementProgressListener progressListener) {
+        return delegate.giveIncrementTo(employees, percentage, progressListener);
+    }
+
+    /**
+     * Saves the employee through the delegate
+     * and drops the cached lookups of its email,
+     * and of its previous email if it changed.
+     * @param employee instance to save.
+     */
+    @Override
+    public void saveEmployee(Employee employee) {
+        final String previousEmail = employee.getCleanEmail();
+        try {
+            delegate.saveEmployee(employee);
+        } finally {
+            invalidate(previousEmail);
+            invalidate(employee.getEmail());
+        }
+    }
+
+    /**
+     * Saves the employees through the delegate
+     * and drops the cached lookups of their emails,
+     * and of their previous emails if they changed.
+     * @param employees the instances to save.
+     * @return the report of the delegate.
+     */
+    @Override
+    public BatchSaveReport saveEmployees(Collection<Employee> employees) {
+        final List<String> previousEmails = new ArrayList<String>(employees.size());
+        for (Employee employee : employees) {
+            previousEmails.add(employee.getCleanEmail());
+        }
+        try {
+            return delegate.saveEmployees(employees);
+        } finally {
+            for (String previousEmail : previousEmails) {
+                invalidate(previousEmail);
+            }
+            for (Employee employee : employees) {
+                invalidate(employee.getEmail());
+            }
+        }
+    }
+
+    /**
+     * Deletes the employee through the delegate
+     * and drops the cached lookup of its email.
+     * @param employee instance to delete.
+     */
+    @Override
+    public void deleteEmployee(Employee employee) {
+        try {
+            delegate.deleteEmployee(employee);
+        } finally {
+            invalidate(employee.getEmail());
+        }
+    }
+
+    /**
+     * Finds the employee by email,
+     * from the cache when it was looked up recently.
+     * @param email the employee email to search.
+     * @return Employee matching the email, null if none was saved with that email.
+     */
+    @Override
+    public Employee findEmployeeByEmail(String email) {
+        if (email == null) {
+            return delegate.findEmployeeByEmail(null);
+        }
+        final Employee employee = cache.get(EmailIndex.normalize(email));
+        return employee == NOT_FOUND ? null : employee;
+    }
+
+    /**
+     * Checks whether an employee with the same email was saved,
+     * answering free emails from the delegate's Bloom filter
+     * and everything else from the cache.
+     * @param employee the employee instance to match.
+     * @return true if th employee exists, false otherwise.
+     */
+    @Override
+    public boolean employeeExists(Employee employee) {
+        final String email = employee.getEmail();
+        if (email == null || delegate.isEmailCertainlyUnused(email)) {
+            return false;
+        }
+        return findEmployeeByEmail(email) != null;
+    }
+
+    @Override
+    public boolean isEmailCertainlyUnused(String email) {
+        return delegate.isEmailCertainlyUnused(email);
+    }
+
+    @Override
+    public void useEmailBloomFilter(long expectedEmployees, double falsePositiveRate) {
+        delegate.useEmailBloomFilter(expectedEmployees, falsePositiveRate);
+    }
+
+    @Override
+    public void useSmtpConnectionPool(SmtpConnectionPool smtpConnectionPool) {
+        delegate.useSmtpConnectionPool(smtpConnectionPool);
+    }
+
+    @Override
+    public EmailIndex getEmailIndex() {
+        return delegate.getEmailIndex();
+    }
+
+    @Override
+    public void useSnapshot(EmployeeSnapshot snapshot) {
+        try {
+            delegate.useSnapshot(snapshot);
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public EmployeeSnapshot getSnapshot() {
+        return delegate.getSnapshot();
+    }
+
+    /**
+     * Wraps a repository so that every employee created, updated or deleted
+     * through it drops the cached lookups of its email, and of its previous
+     * email if it changed, however the write was started.
+     * Install the wrapper with Employee.useRepository.
+     * @param repository the repository employees are persisted to.
+     * @return the repository that passes every call on and invalidates this cache.
+     */
+    public EmployeeRepository invalidatingRepository(final EmployeeRepository repository) {
+        return new EmployeeRepository() {
+            @Override
+            public int count() {
+                return repository.count();
+            }
+
+            @Override
+            public boolean isNew(Employee employee) {
+                return repository.isNew(employee);
+            }
+
+            @Override
+            public void create(Employee employee) {
+                try {
+                    repository.create(employee);
+                } finally {
+                    invalidate(employee.getEmail());
+                }
+            }
+
+            @Override
+            public void update(Employee employee, int fields) {
+                try {
+                    repository.update(employee, fields);
+                } finally {
+                    invalidate(employee.getCleanEmail());
+                    invalidate(employee.getEmail());
+                }
+            }
+
+            @Override
+            public boolean delete(Employee employee) {
+                try {
+                    return repository.delete(employee);
+                } finally {
+                    invalidate(employee.getEmail());
+                }
+            }
+
+            @Override
+            public Employee findById(int employeeId) {
+                return repository.findById(employeeId);
+            }
+
+            @Override
+            public Employee findByEmail(String email) {
+                return repository.findByEmail(email);
+            }
+
+            @Override
+            public List<String> emails() {
+                return repository.emails();
+            }
+
+            @Override
+            public void giveIncrementOf(int percentage) {
+                try {
+                    repository.giveIncrementOf(percentage);
+                } finally {
+                    cache.invalidateAll();
+                }
+            }
+        };
+    }
+
+    /**
+     * Getter for the cache.
+     * @return the lookup cache, with its hit ratio, eviction count and load latency.
+     */
+    public WTinyLfuCache<String, Employee> getCache() {
+        return cache;
+    }
+
+    private void invalidate(String email) {
+        if (email != null) {
+            cache.invalidate(EmailIndex.normalize(email));
+        }
+    }
+}
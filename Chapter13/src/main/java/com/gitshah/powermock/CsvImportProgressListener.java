@@ -0,0 +1,14 @@
+package com.gitshah.powermock;
+
+/**
+ * Notified as an EmployeeCsvImporter works through a file.
+ * Called from the threads saving the batches, once per saved batch.
+ */
+public interface CsvImportProgressListener {
+
+    /**
+     * Reports the progress of the import.
+     * @param report the live report, with its throughput and estimated time remaining.
+     */
+    void progressed(CsvImportReport report);
+}
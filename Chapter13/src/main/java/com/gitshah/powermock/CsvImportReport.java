@@ -0,0 +1,253 @@
+package com.gitshah.powermock;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The live outcome of an EmployeeCsvImporter run.
+ * Holds the number of rows rejected as invalid and of employees created,
+ * updated and failed to save, along with the throughput and the estimated
+ * time remaining, based on how much of the file has been saved so far.
+ * Batches may finish out of order, only the part of the file
+ * up to the first unfinished batch counts as saved.
+ * Only the first MAX_REPORTED rejections and failures are kept,
+ * all of them are counted.
+ */
+public class CsvImportReport {
+
+    /**
+     * The most rejections and failures kept for inspection.
+     */
+    public static final int MAX_REPORTED = 1000;
+
+    private final long totalBytes;
+    private final long startNanos = System.nanoTime();
+    private long endNanos;
+    private long savedBytes;
+
+    /**
+     * The byte ranges of batches that finished ahead of an earlier batch,
+     * by start offset, mapped to their end offset.
+     */
+    private final TreeMap<Long, Long> savedAhead = new TreeMap<Long, Long>();
+
+    private long rejectedCount;
+    private long createdCount;
+    private long updatedCount;
+    private long failureCount;
+
+    /**
+     * The rejected rows by line number, mapped to why they were rejected.
+     */
+    private final Map<Long, String> rejections = new LinkedHashMap<Long, String>();
+
+    /**
+     * The employees that failed to save,
+     * mapped to the exception that made them fail.
+     */
+    private final Map<Employee, Exception> failures = new LinkedHashMap<Employee, Exception>();
+
+    /**
+     * The constructor that takes in the size of the file to import.
+     * @param totalBytes the size of the file in bytes.
+     */
+    CsvImportReport(final long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Records a row that failed validation.
+     * @param line the line number of the row, from 1.
+     * @param reason why the row was rejected.
+     */
+    synchronized void rejected(final long line, final String reason) {
+        rejectedCount++;
+        if (rejections.size() < MAX_REPORTED) {
+            rejections.put(line, reason);
+        }
+    }
+
+    /**
+     * Records the outcome of a saved batch.
+     * @param batch the outcome of saving the batch.
+     * @param startOffset the file offset of the first row of the batch.
+     * @param endOffset the file offset just past the last row of the batch.
+     */
+    synchronized void batchSaved(final BatchSaveReport batch, final long startOffset, final long endOffset) {
+        createdCount += batch.getCreatedCount();
+        updatedCount += batch.getUpdatedCount();
+        for (Map.Entry<Employee, Exception> failure : batch.getFailures().entrySet()) {
+            failed(failure.getKey(), failure.getValue());
+        }
+        saved(startOffset, endOffset);
+    }
+
+    /**
+     * Records a batch that failed to save as a whole.
+     * @param batch the employees of the batch.
+     * @param cause the reason it failed.
+     * @param startOffset the file offset of the first row of the batch.
+     * @param endOffset the file offset just past the last row of the batch.
+     */
+    synchronized void batchFailed(final Iterable<Employee> batch, final Exception cause,
+                                  final long startOffset, final long endOffset) {
+        for (Employee employee : batch) {
+            failed(employee, cause);
+        }
+        saved(startOffset, endOffset);
+    }
+
+    /**
+     * Records that the whole file was read and saved.
+     */
+    synchronized void finished() {
+        savedBytes = totalBytes;
+        savedAhead.clear();
+        endNanos = System.nanoTime();
+    }
+
+    private void failed(final Employee employee, final Exception cause) {
+        failureCount++;
+        if (failures.size() < MAX_REPORTED) {
+            failures.put(employee, cause);
+        }
+    }
+
+    /**
+     * Extends the saved part of the file by a finished batch,
+     * or holds on to the batch until the batches before it finished.
+     */
+    private void saved(final long startOffset, final long endOffset) {
+        if (startOffset > savedBytes) {
+            savedAhead.put(startOffset, endOffset);
+            return;
+        }
+        savedBytes = Math.max(savedBytes, endOffset);
+        while (!savedAhead.isEmpty() && savedAhead.firstKey() <= savedBytes) {
+            savedBytes = Math.max(savedBytes, savedAhead.pollFirstEntry().getValue());
+        }
+    }
+
+    /**
+     * Getter for the rowCount.
+     * @return the number of rows processed so far, rejected ones included.
+     */
+    public synchronized long getRowCount() {
+        return rejectedCount + createdCount + updatedCount + failureCount;
+    }
+
+    /**
+     * Getter for the rejectedCount.
+     * @return the number of rows rejected as invalid.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Getter for the rejections.
+     * @return the first rejected rows by line number, mapped to why they were rejected.
+     */
+    public synchronized Map<Long, String> getRejections() {
+        return Collections.unmodifiableMap(new LinkedHashMap<Long, String>(rejections));
+    }
+
+    /**
+     * Getter for the createdCount.
+     * @return the number of employees created.
+     */
+    public synchronized long getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Getter for the updatedCount.
+     * @return the number of employees updated.
+     */
+    public synchronized long getUpdatedCount() {
+        return updatedCount;
+    }
+
+    /**
+     * Getter for the failureCount.
+     * @return the number of employees that could not be saved.
+     */
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Getter for the failures.
+     * @return the first employees that could not be saved
+     * mapped to the exception that made them fail.
+     */
+    public synchronized Map<Employee, Exception> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<Employee, Exception>(failures));
+    }
+
+    /**
+     * Getter for the totalBytes.
+     * @return the size of the file in bytes.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Getter for the savedBytes.
+     * @return the number of bytes from the start of the file
+     * up to which every row was saved.
+     */
+    public synchronized long getSavedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * Checks whether the import finished.
+     * @return true if the whole file was read and saved, false otherwise.
+     */
+    public synchronized boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    /**
+     * Getter for the elapsedMillis.
+     * @return the time the import took, or has taken so far.
+     */
+    public synchronized long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos());
+    }
+
+    /**
+     * Getter for the rowsPerSecond.
+     * @return the number of rows processed per second so far.
+     */
+    public synchronized double getRowsPerSecond() {
+        final long elapsedNanos = elapsedNanos();
+        return elapsedNanos == 0 ? 0 : getRowCount() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Estimates the time remaining by assuming the rest
+     * of the file is saved as fast as its start was.
+     * @return the estimated time remaining, 0 once finished,
+     * -1 until the first batch was saved.
+     */
+    public synchronized long getEstimatedRemainingMillis() {
+        if (isFinished()) {
+            return 0;
+        }
+        if (savedBytes == 0) {
+            return -1;
+        }
+        final double nanosPerByte = (double) elapsedNanos() / savedBytes;
+        return TimeUnit.NANOSECONDS.toMillis((long) (nanosPerByte * (totalBytes - savedBytes)));
+    }
+
+    private long elapsedNanos() {
+        return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+}
@@ -10,6 +10,10 @@ import java.util.List;
  * associated with at max one Department,
  * but one Department will be associated with
  * one or more Employees
+ * <p>
+ * The employees and their salary statistics are guarded
+ * by the department's own lock, which salary changes take as well,
+ * so a BulkSalaryIncrement may run while the department is read.
  *
  * @author Deep Shah
  */
@@ -25,6 +29,33 @@ public class Department extends BaseEntity {
      */
     private long maxSalaryOffered;
 
+    /**
+     * The salary statistics of all employees in this department,
+     * kept sorted so the max survives removals and salary changes.
+     */
+    private final SalaryStatistics salaryStatistics = new SalaryStatistics();
+
+    /**
+     * Keeps the salaries up to date when an employee's salary changes.
+     * A raise may reach it after the employee left the department,
+     * so it only touches the statistics of a current member,
+     * replacing the salary they hold for it.
+     */
+    private final SalaryChangeListener salaryChangeListener = new SalaryChangeListener() {
+        @Override
+        public void salaryChanged(Employee employee, long oldSalary, long newSalary) {
+            synchronized (Department.this) {
+                if (employee.getSalaryChangeListener() != this) {
+                    return;
+                }
+                salaryStatistics.remove(employee.getRecordedSalary());
+                salaryStatistics.add(newSalary);
+                employee.setRecordedSalary(newSalary);
+                maxSalaryOffered = salaryStatistics.getMax();
+            }
+        }
+    };
+
     /**
      * The department id field.
      */
@@ -52,23 +83,79 @@ public class Department extends BaseEntity {
     /**
      * The method to add a new employee to this department.
      * @param employee the instance to add to this departmnet.
+     * @throws IllegalArgumentException if the employee already belongs to a department.
      */
-    public void addEmployee(final Employee employee) {
+    public synchronized void addEmployee(final Employee employee) {
+        if (employee.getSalaryChangeListener() != null) {
+            throw new IllegalArgumentException("Employee " + employee.getEmployeeId()
+                    + " already belongs to a department");
+        }
         employees.add(employee);
-        updateMaxSalaryOffered();
+        employee.setSalaryChangeListener(salaryChangeListener);
+        final long salary = employee.getSalary();
+        salaryStatistics.add(salary);
+        employee.setRecordedSalary(salary);
+        maxSalaryOffered = salaryStatistics.getMax();
+    }
+
+    /**
+     * The method to remove an employee from this department.
+     * The salary taken out of the statistics is the one they hold
+     * for the employee, not one a concurrent raise just wrote.
+     * @param employee the instance to remove from this department.
+     * @return true if the employee was part of this department, false otherwise.
+     */
+    public synchronized boolean removeEmployee(final Employee employee) {
+        if (!employees.remove(employee)) {
+            return false;
+        }
+        employee.setSalaryChangeListener(null);
+        salaryStatistics.remove(employee.getRecordedSalary());
+        maxSalaryOffered = salaryStatistics.getMax();
+        return true;
     }
 
     /**
      * The private method that keeps track of
      * max salary offered by this department.
+     * It rescans every employee and rebuilds the salary statistics from scratch;
+     * addEmployee, removeEmployee and salary changes
+     * keep them up to date without a rescan.
      */
-    private void updateMaxSalaryOffered() {
-        maxSalaryOffered = 0;
+    private synchronized void updateMaxSalaryOffered() {
+        salaryStatistics.clear();
         for (Employee employee : employees) {
-            if(employee.getSalary() > maxSalaryOffered) {
-                maxSalaryOffered = employee.getSalary();
-            }
+            final long salary = employee.getSalary();
+            salaryStatistics.add(salary);
+            employee.setRecordedSalary(salary);
         }
+        maxSalaryOffered = salaryStatistics.getMax();
+    }
+
+    /**
+     * Getter for the maxSalaryOffered.
+     * @return the max salary offered by this department.
+     */
+    public synchronized long getMaxSalaryOffered() {
+        return maxSalaryOffered;
+    }
+
+    /**
+     * The employees of this department, for the codec and exporters
+     * that walk them.
+     * @return a copy of the employees in the order they joined.
+     */
+    synchronized List<Employee> employees() {
+        return new ArrayList<Employee>(employees);
+    }
+
+    /**
+     * Getter for the salaryStatistics.
+     * @return a copy of the salary statistics of this department,
+     * unaffected by later changes.
+     */
+    public synchronized SalaryStatistics getSalaryStatistics() {
+        return salaryStatistics.copy();
     }
 
     /**
@@ -99,13 +186,27 @@ public class Department extends BaseEntity {
     /**
      * This method calculate the total net worth
      * of a given department.
-     * This method is supposed to do some complex
-     * calculation based on the number of employees
-     * and their salaries to find the total net worth of this department.
-     * Currently this method throws UnsupportedOperationException.
+     * The total net worth is the sum of the salaries of all its employees,
+     * see calculateTotalNetWorthAsLong.
      * @return the total net worth of department.
+     * @throws ArithmeticException if the net worth does not fit in an int.
      */
     public int calculateTotalNetWorth() {
-        throw new UnsupportedOperationException();
+        final long netWorth = calculateTotalNetWorthAsLong();
+        if (netWorth > Integer.MAX_VALUE || netWorth < Integer.MIN_VALUE) {
+            throw new ArithmeticException("Net worth " + netWorth + " does not fit in an int");
+        }
+        return (int) netWorth;
+    }
+
+    /**
+     * This method calculate the total net worth
+     * of a given department as a long.
+     * The salary statistics keep the total up to date as employees join or leave
+     * and as their salaries change, so no employee is visited.
+     * @return the total net worth of department.
+     */
+    public synchronized long calculateTotalNetWorthAsLong() {
+        return salaryStatistics.getTotal();
     }
 }
@@ -0,0 +1,119 @@
+package com.gitshah.powermock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over normalized employee emails.
+ * mightContain never returns false for an email that was added,
+ * so a false answer proves an email is unused without a lookup.
+ * It is sized from the expected number of emails and the
+ * acceptable false positive rate.
+ */
+public class EmailBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * The constructor that sizes the filter.
+     * @param expectedEmails the number of emails the filter is expected to hold.
+     * @param falsePositiveRate the acceptable false positive rate, between 0 and 1.
+     */
+    public EmailBloomFilter(final long expectedEmails, final double falsePositiveRate) {
+        if (expectedEmails <= 0) {
+            throw new IllegalArgumentException("Expected emails must be positive: " + expectedEmails);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        final double ln2 = Math.log(2);
+        final long optimalBits = (long) Math.ceil(-expectedEmails * Math.log(falsePositiveRate) / (ln2 * ln2));
+        final int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = 64L * words;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedEmails * ln2));
+    }
+
+    /**
+     * Adds an email, in any case.
+     * @param email the email to add, null is ignored.
+     */
+    public void add(final String email) {
+        final String key = EmailIndex.normalize(email);
+        if (key == null) {
+            return;
+        }
+        final long hash = hash64(key);
+        final long h1 = hash;
+        final long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            setBit(Math.floorMod(h1 + i * h2, bitCount));
+        }
+    }
+
+    /**
+     * Checks whether an email may have been added.
+     * @param email the email to check, in any case.
+     * @return false if the email was certainly never added, true if it may have been.
+     */
+    public boolean mightContain(final String email) {
+        final String key = EmailIndex.normalize(email);
+        if (key == null) {
+            return false;
+        }
+        final long hash = hash64(key);
+        final long h1 = hash;
+        final long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Getter for the bitCount.
+     * @return the number of bits in the filter.
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Getter for the hashCount.
+     * @return the number of bits set per email.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private void setBit(final long bit) {
+        final int word = (int) (bit >>> 6);
+        final long mask = 1L << bit;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * 64 bit FNV-1a over the characters of the key, finished with a mix step.
+     */
+    private static long hash64(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
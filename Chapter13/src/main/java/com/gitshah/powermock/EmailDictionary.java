@@ -0,0 +1,167 @@
+package com.gitshah.powermock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns emails, giving each distinct email a dense int code.
+ * The UTF-8 bytes of the emails live in a direct buffer and the
+ * bookkeeping in primitive arrays, so millions of emails cost
+ * the garbage collector a handful of objects rather than millions.
+ * Codes are looked up through an open-addressing hash table
+ * with linear probing, kept at most half full.
+ * Not thread safe, and neither is the OffHeapEmployeeStore that owns it,
+ * so callers of the store must synchronize access to both.
+ */
+public class EmailDictionary {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY = -1;
+
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(1024);
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] table = newTable(INITIAL_CAPACITY * 2);
+    private int size;
+
+    /**
+     * Returns the code of an email, adding the email if it is new.
+     * @param email the email to intern.
+     * @return the code of the email.
+     */
+    public int intern(final String email) {
+        final byte[] encoded = email.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(encoded);
+        final int slot = slotOf(encoded, hash);
+        if (table[slot] != EMPTY) {
+            return table[slot];
+        }
+        if (size == offsets.length) {
+            grow();
+            return intern(email);
+        }
+        ensureBytes(encoded.length);
+        final int code = size++;
+        offsets[code] = bytes.position();
+        lengths[code] = encoded.length;
+        hashes[code] = hash;
+        bytes.put(encoded);
+        table[slot] = code;
+        return code;
+    }
+
+    /**
+     * Looks up the code of an email without adding it.
+     * @param email the email to look up.
+     * @return the code of the email, -1 if it was never interned.
+     */
+    public int find(final String email) {
+        final byte[] encoded = email.getBytes(StandardCharsets.UTF_8);
+        return table[slotOf(encoded, hash(encoded))];
+    }
+
+    /**
+     * Decodes the email of a code.
+     * @param code the code returned by intern.
+     * @return the email.
+     */
+    public String get(final int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("No email with code " + code);
+        }
+        final byte[] encoded = new byte[lengths[code]];
+        final ByteBuffer view = bytes.duplicate();
+        view.position(offsets[code]);
+        view.get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Getter for the size.
+     * @return the number of distinct emails.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for the offHeapBytes.
+     * @return the capacity of the direct buffer holding the emails.
+     */
+    public long getOffHeapBytes() {
+        return bytes.capacity();
+    }
+
+    /**
+     * Finds the slot holding an email, or the empty slot it belongs in.
+     */
+    private int slotOf(final byte[] encoded, final int hash) {
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != EMPTY && !matches(table[slot], encoded, hash)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean matches(final int code, final byte[] encoded, final int hash) {
+        if (hashes[code] != hash || lengths[code] != encoded.length) {
+            return false;
+        }
+        final int offset = offsets[code];
+        for (int i = 0; i < encoded.length; i++) {
+            if (bytes.get(offset + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the code arrays and rehashes the table.
+     */
+    private void grow() {
+        final int capacity = offsets.length * 2;
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        table = newTable(capacity * 2);
+        final int mask = table.length - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = hashes[code] & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code;
+        }
+    }
+
+    private void ensureBytes(final int needed) {
+        if (bytes.remaining() >= needed) {
+            return;
+        }
+        final ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(bytes.capacity() * 2, bytes.position() + needed));
+        bytes.flip();
+        larger.put(bytes);
+        bytes = larger;
+    }
+
+    private static int[] newTable(final int capacity) {
+        final int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    /**
+     * FNV-1a over the bytes, spread so linear probing sees the high bits too.
+     */
+    private static int hash(final byte[] encoded) {
+        int hash = 0x811C9DC5;
+        for (byte b : encoded) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
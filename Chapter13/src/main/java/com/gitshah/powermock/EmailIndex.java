@@ -0,0 +1,217 @@
+package com.gitshah.powermock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index of employees by email.
+ * Emails are trimmed and lower cased before they are hashed,
+ * so lookups are case insensitive.
+ * The index is an open-addressing hash table with linear probing,
+ * kept at most half full, and counts its hits and misses.
+ */
+public class EmailIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private Employee[] values = new Employee[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Normalizes an email the way the index keys it.
+     * @param email the email to normalize.
+     * @return the trimmed, lower cased email, null if email is null.
+     */
+    public static String normalize(final String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indexes an employee under its email,
+     * replacing any employee indexed under the same email.
+     * Employees without an email are not indexed.
+     * @param employee the employee to index.
+     */
+    public void put(final Employee employee) {
+        final String key = normalize(employee.getEmail());
+        if (key == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            final int slot = slotOf(key);
+            if (keys[slot] == null) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = employee;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the employee indexed under an email.
+     * @param email the email to look up, in any case.
+     * @return the employee, null if none is indexed under the email.
+     */
+    public Employee get(final String email) {
+        final String key = normalize(email);
+        Employee employee = null;
+        if (key != null) {
+            lock.readLock().lock();
+            try {
+                employee = values[slotOf(key)];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        (employee == null ? missCount : hitCount).incrementAndGet();
+        return employee;
+    }
+
+    /**
+     * Checks whether an employee is indexed under an email.
+     * @param email the email to look up, in any case.
+     * @return true if an employee is indexed under the email, false otherwise.
+     */
+    public boolean contains(final String email) {
+        return get(email) != null;
+    }
+
+    /**
+     * Removes the employee indexed under an email.
+     * @param email the email to remove, in any case.
+     * @return the removed employee, null if none was indexed under the email.
+     */
+    public Employee remove(final String email) {
+        final String key = normalize(email);
+        if (key == null) {
+            return null;
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(key);
+            final Employee removed = values[slot];
+            if (removed == null) {
+                return null;
+            }
+            //Shift the rest of the probe run back so no lookup stops short at the hole.
+            final int mask = keys.length - 1;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (keys[next] == null) {
+                    break;
+                }
+                final int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    slot = next;
+                }
+            }
+            keys[slot] = null;
+            values[slot] = null;
+            size--;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the emails.
+     * @return a snapshot of the normalized emails in the index.
+     */
+    public List<String> emails() {
+        lock.readLock().lock();
+        try {
+            final List<String> emails = new ArrayList<String>(size);
+            for (String key : keys) {
+                if (key != null) {
+                    emails.add(key);
+                }
+            }
+            return emails;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the size.
+     * @return the number of indexed employees.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the hitCount.
+     * @return the number of lookups that found an employee.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Getter for the missCount.
+     * @return the number of lookups that found no employee.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Finds the slot holding the key, or the empty slot
+     * where it would be inserted.
+     */
+    private int slotOf(final String key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(final int capacity) {
+        final String[] oldKeys = keys;
+        final Employee[] oldValues = values;
+        keys = new String[capacity];
+        values = new Employee[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                final int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the String hash so the low bits used for the slot are well mixed.
+     */
+    private static int hash(final String key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -7,6 +7,33 @@ package com.gitshah.powermock;
  */
 public class Employee {
 
+    /**
+     * The bit of the employeeId field in the dirty fields mask.
+     */
+    public static final int EMPLOYEE_ID = 1;
+
+    /**
+     * The bit of the email field in the dirty fields mask.
+     */
+    public static final int EMAIL = 1 << 1;
+
+    /**
+     * The bit of the salary field in the dirty fields mask.
+     */
+    public static final int SALARY = 1 << 2;
+
+    /**
+     * The queue saves are written behind through,
+     * null when saving is not supported.
+     */
+    private static volatile WriteBehindQueue writeBehindQueue;
+
+    /**
+     * The repository employees are persisted to,
+     * null when persistence is not supported.
+     */
+    private static volatile EmployeeRepository repository;
+
     /**
      * The employee Id field.
      */
@@ -18,6 +45,30 @@ public class Employee {
     private String email;
     private long salary;
 
+    /**
+     * Notified when the salary changes,
+     * set by the Department this employee belongs to.
+     */
+    private volatile SalaryChangeListener salaryChangeListener;
+
+    /**
+     * The salary the statistics of the Department this employee belongs to
+     * hold for it, guarded by the department's lock.
+     */
+    private long recordedSalary;
+
+    /**
+     * The fields changed since the employee was last
+     * written to or read from the DB, as a mask of field bits.
+     */
+    private int dirtyFields;
+
+    /**
+     * The email the employee had when it was last clean,
+     * only meaningful while the email is dirty.
+     */
+    private String cleanEmail;
+
     /**
      * The default constructor.
      */
@@ -36,10 +87,11 @@ public class Employee {
      * The method that is responsible to return the
      * count of employees in the system.
      * @return The total number of employees in the system.
-     * Currently this method throws UnsupportedOperationException.
+     * Currently this method throws UnsupportedOperationException,
+     * unless a repository is in use.
      */
     public static int count() {
-        throw new UnsupportedOperationException();
+        return repository().count();
     }
 
     /**
@@ -47,19 +99,48 @@ public class Employee {
      * salaries of all employees by the given percentage.
      * @param percentage the percentage value by which
      *                   salaries would be increased
-     * Currently this method throws UnsupportedOperationException.
+     * Currently this method throws UnsupportedOperationException,
+     * unless a repository is in use.
      */
     public static void giveIncrementOf(int percentage) {
-        throw new UnsupportedOperationException();
+        repository().giveIncrementOf(percentage);
+    }
+
+    /**
+     * Makes the persistence methods of all employees
+     * delegate to a repository.
+     * @param repository the repository to persist employees to, null to stop using one.
+     */
+    public static void useRepository(EmployeeRepository repository) {
+        Employee.repository = repository;
     }
 
     /**
      * This method is responsible to save the employee
      * details to the DB.  Currently this method
-     * throws UnsupportedOperationException.
+     * throws UnsupportedOperationException,
+     * unless a write-behind queue or a repository is in use.
+     * @throws IllegalArgumentException if a write-behind queue is in use
+     * and the employee has no id yet.
      */
     public void save() {
-        throw new UnsupportedOperationException();
+        final WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.enqueue(this);
+        } else if (isNew()) {
+            create();
+        } else {
+            update();
+        }
+    }
+
+    /**
+     * Makes save queue employees in a write-behind queue
+     * that writes them in the background.
+     * @param queue the queue to save employees to, null to stop using one.
+     */
+    public static void useWriteBehind(WriteBehindQueue queue) {
+        writeBehindQueue = queue;
     }
 
     /**
@@ -68,30 +149,83 @@ public class Employee {
      * @return true if employee is not yet
      * persisted in the DB, false otherwise.
      * Currently this method throws
-     * UnsupportedOperationException
+     * UnsupportedOperationException,
+     * unless a repository is in use.
      */
     public boolean isNew() {
-        throw new UnsupportedOperationException();
+        return repository().isNew(this);
     }
 
     /**
      * This method is responsible to update
      * an existing employee's information into the DB.
-     * Currently this method throws
-     * UnsupportedOperationException
+     * Only the fields changed since the employee was
+     * last clean are written, and nothing at all when none were.
      */
     public void update() {
-        throw new UnsupportedOperationException();
+        if (dirtyFields == 0) {
+            return;
+        }
+        updateFields(dirtyFields);
+        markClean();
+    }
+
+    /**
+     * This method is responsible to write the
+     * given fields of the employee into the DB.
+     * Currently this method throws
+     * UnsupportedOperationException,
+     * unless a repository is in use.
+     * @param fields the mask of field bits to write.
+     */
+    protected void updateFields(int fields) {
+        repository().update(this, fields);
     }
 
     /**
      * This method is responsible to create
      * a new employee into the DB.
      * Currently this method throws
-     * UnsupportedOperationException
+     * UnsupportedOperationException,
+     * unless a repository is in use.
      */
     public void create() {
-        throw new UnsupportedOperationException();
+        repository().create(this);
+        markClean();
+    }
+
+    /**
+     * This method is responsible to delete
+     * the employee from the DB.
+     * Currently this method throws
+     * UnsupportedOperationException,
+     * unless a repository is in use.
+     * @return true if the employee was deleted, false if it was not in the DB.
+     */
+    public boolean delete() {
+        return repository().delete(this);
+    }
+
+    /**
+     * Getter for the repository in use, for services that
+     * fall back to it for the employees they have not seen.
+     * @return the repository employees are persisted to, null if none is in use.
+     */
+    static EmployeeRepository repositoryInUse() {
+        return repository;
+    }
+
+    /**
+     * Getter for the repository in use.
+     * @return the repository employees are persisted to.
+     * @throws UnsupportedOperationException if none is in use.
+     */
+    private static EmployeeRepository repository() {
+        final EmployeeRepository current = repository;
+        if (current == null) {
+            throw new UnsupportedOperationException();
+        }
+        return current;
     }
 
     /**
@@ -99,9 +233,20 @@ public class Employee {
      * @param employeeId value to set.
      */
     public void setEmployeeId(final int employeeId) {
+        if (this.employeeId != employeeId) {
+            dirtyFields |= EMPLOYEE_ID;
+        }
         this.employeeId = employeeId;
     }
 
+    /**
+     * The getter for the employeeId field.
+     * @return the employee id.
+     */
+    public int getEmployeeId() {
+        return employeeId;
+    }
+
     /**
      * The Getter for the employee email.
      * @return the email of the employee.
@@ -110,6 +255,29 @@ public class Employee {
         return email;
     }
 
+    /**
+     * The Setter for the employee email.
+     * @param email the value to set.
+     */
+    public void setEmail(String email) {
+        if (email == null ? this.email == null : email.equals(this.email)) {
+            return;
+        }
+        if ((dirtyFields & EMAIL) == 0) {
+            cleanEmail = this.email;
+            dirtyFields |= EMAIL;
+        }
+        this.email = email;
+    }
+
+    /**
+     * Getter for the email the employee had when it was last clean.
+     * @return the email before it was changed, the current email if it was not.
+     */
+    String getCleanEmail() {
+        return (dirtyFields & EMAIL) == 0 ? email : cleanEmail;
+    }
+
     /**
      * The getter for salary.
      * @return the value of salary.
@@ -123,6 +291,109 @@ public class Employee {
      * @param salary the value to set.
      */
     public void setSalary(long salary) {
+        final long oldSalary = this.salary;
+        this.salary = salary;
+        if (oldSalary != salary) {
+            dirtyFields |= SALARY;
+        }
+        final SalaryChangeListener listener = salaryChangeListener;
+        if (listener != null && oldSalary != salary) {
+            listener.salaryChanged(this, oldSalary, salary);
+        }
+    }
+
+    /**
+     * Changes the salary and updates the employee in the DB, keeping the
+     * new salary only if the update went through. The department is only
+     * told about the change once it was written, and a failed update
+     * puts back the salary and the dirty fields as they were before.
+     * @param salary the value to set.
+     * @throws RuntimeException whatever update threw, after the rollback.
+     */
+    void updateSalary(long salary) {
+        final long oldSalary = this.salary;
+        final int oldDirtyFields = dirtyFields;
         this.salary = salary;
+        if (oldSalary != salary) {
+            dirtyFields |= SALARY;
+        }
+        try {
+            update();
+        } catch (RuntimeException e) {
+            this.salary = oldSalary;
+            dirtyFields = oldDirtyFields;
+            throw e;
+        }
+        final SalaryChangeListener listener = salaryChangeListener;
+        if (listener != null && oldSalary != salary) {
+            listener.salaryChanged(this, oldSalary, salary);
+        }
+    }
+
+    /**
+     * Checks whether any field changed since the employee was last clean.
+     * @return true if update would write to the DB, false otherwise.
+     */
+    public boolean isDirty() {
+        return dirtyFields != 0;
+    }
+
+    /**
+     * Checks whether the given fields changed since the employee was last clean.
+     * @param fields the mask of field bits to check.
+     * @return true if any of the fields changed, false otherwise.
+     */
+    public boolean isDirty(int fields) {
+        return (dirtyFields & fields) != 0;
+    }
+
+    /**
+     * Getter for the dirtyFields.
+     * @return the mask of field bits changed since the employee was last clean.
+     */
+    public int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    /**
+     * Marks every field as in sync with the DB,
+     * to be called once the employee was created in or read from the DB.
+     */
+    public void markClean() {
+        dirtyFields = 0;
+        cleanEmail = null;
+    }
+
+    /**
+     * Getter for the salaryChangeListener.
+     * @return the listener notified on salary changes, null for none.
+     */
+    SalaryChangeListener getSalaryChangeListener() {
+        return salaryChangeListener;
+    }
+
+    /**
+     * Setter for the salaryChangeListener.
+     * @param salaryChangeListener the listener to notify
+     *                             on salary changes, null for none.
+     */
+    void setSalaryChangeListener(SalaryChangeListener salaryChangeListener) {
+        this.salaryChangeListener = salaryChangeListener;
+    }
+
+    /**
+     * Getter for the recordedSalary.
+     * @return the salary the department's statistics hold for this employee.
+     */
+    long getRecordedSalary() {
+        return recordedSalary;
+    }
+
+    /**
+     * Setter for the recordedSalary.
+     * @param recordedSalary the salary the department's statistics now hold for this employee.
+     */
+    void setRecordedSalary(long recordedSalary) {
+        this.recordedSalary = recordedSalary;
     }
 }
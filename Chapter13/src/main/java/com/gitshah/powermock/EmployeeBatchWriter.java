@@ -0,0 +1,17 @@
+package com.gitshah.powermock;
+
+import java.util.List;
+
+/**
+ * The store a WriteBehindQueue flushes saved employees to.
+ */
+public interface EmployeeBatchWriter {
+
+    /**
+     * Writes a batch of employees.
+     * Either the whole batch is written or an exception is thrown,
+     * in which case the queue retries it later.
+     * @param employees the employees to write, in the order they were first saved.
+     */
+    void write(List<Employee> employees);
+}
@@ -0,0 +1,342 @@
+package com.gitshah.powermock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A compact binary encoding of employees and departments.
+ * Every message starts with a schema version byte, ids and counts are
+ * varints, the email is a varint length, 0 for none and otherwise the
+ * byte count + 1, followed by its UTF-8 bytes, and the salary is a
+ * zigzag varint so small negative adjustments stay small too.
+ * The email is encoded straight into the buffer and decoded straight
+ * from it, and decoding fills instances the caller reuses, so the only
+ * allocation left is the email String, skipped as well when a reused
+ * employee already has the same ASCII email.
+ * A codec keeps a scratch buffer, use one per thread.
+ */
+public final class EmployeeCodec {
+
+    /**
+     * The schema version written by this codec.
+     */
+    public static final int VERSION = 1;
+
+    private static final int NO_EMAIL = 0;
+
+    /**
+     * Where emails are copied out of direct buffers to be decoded.
+     */
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Encodes an employee at the buffer's position.
+     * @param employee the employee to encode.
+     * @param buffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer has no room left.
+     */
+    public void encodeEmployee(final Employee employee, final ByteBuffer buffer) {
+        buffer.put((byte) VERSION);
+        writeEmployee(employee, buffer);
+    }
+
+    /**
+     * Decodes an employee at the buffer's position into a reused instance,
+     * which is left clean.
+     * @param buffer the buffer to read from.
+     * @param into the employee to fill in.
+     * @return the filled in employee.
+     * @throws IllegalArgumentException if the message is of an unsupported version or malformed.
+     */
+    public Employee decodeEmployee(final ByteBuffer buffer, final Employee into) {
+        checkVersion(buffer);
+        readEmployee(buffer, into);
+        return into;
+    }
+
+    /**
+     * Encodes a department and all of its employees at the buffer's position.
+     * @param department the department to encode.
+     * @param buffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer has no room left.
+     */
+    public void encodeDepartment(final Department department, final ByteBuffer buffer) {
+        encodeDepartment(department.getDepartmentId(), department.employees(), buffer);
+    }
+
+    /**
+     * Encodes a department given by its id and employees at the buffer's position.
+     * @param departmentId the id of the department.
+     * @param employees the employees of the department.
+     * @param buffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer has no room left.
+     */
+    public void encodeDepartment(final int departmentId, final List<Employee> employees, final ByteBuffer buffer) {
+        encodeDepartmentHeader(departmentId, employees.size(), buffer);
+        for (int i = 0; i < employees.size(); i++) {
+            encodeDepartmentEmployee(employees.get(i), buffer);
+        }
+    }
+
+    /**
+     * Encodes the start of a department message, to be followed by
+     * exactly employeeCount calls to encodeDepartmentEmployee,
+     * for departments streamed out in pieces.
+     * @param departmentId the id of the department.
+     * @param employeeCount the number of employees that follow.
+     * @param buffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer has no room left.
+     */
+    public void encodeDepartmentHeader(final int departmentId, final int employeeCount, final ByteBuffer buffer) {
+        buffer.put((byte) VERSION);
+        writeVarInt(departmentId, buffer);
+        writeVarInt(employeeCount, buffer);
+    }
+
+    /**
+     * Encodes one employee of a department message.
+     * @param employee the employee to encode.
+     * @param buffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer has no room left.
+     */
+    public void encodeDepartmentEmployee(final Employee employee, final ByteBuffer buffer) {
+        writeEmployee(employee, buffer);
+    }
+
+    /**
+     * Decodes a department at the buffer's position into a reused list,
+     * refilling the employees already in it and appending new ones
+     * or dropping the surplus as needed.
+     * @param buffer the buffer to read from.
+     * @param employees the list to fill with the department's employees.
+     * @return the id of the department.
+     * @throws IllegalArgumentException if the message is of an unsupported version or malformed.
+     */
+    public int decodeDepartment(final ByteBuffer buffer, final List<Employee> employees) {
+        checkVersion(buffer);
+        final int departmentId = readVarInt(buffer);
+        final int count = readVarInt(buffer);
+        if (count < 0) {
+            throw new IllegalArgumentException("Malformed employee count " + count);
+        }
+        while (employees.size() > count) {
+            employees.remove(employees.size() - 1);
+        }
+        for (int i = 0; i < count; i++) {
+            if (i == employees.size()) {
+                employees.add(new Employee());
+            }
+            readEmployee(buffer, employees.get(i));
+        }
+        return departmentId;
+    }
+
+    /**
+     * Computes how many bytes encodeEmployee writes for an employee.
+     * @param employee the employee to measure.
+     * @return the encoded size in bytes.
+     */
+    public static int encodedSize(final Employee employee) {
+        return 1 + employeeSize(employee);
+    }
+
+    /**
+     * Computes how many bytes encodeDepartment writes for a department.
+     * @param departmentId the id of the department.
+     * @param employees the employees of the department.
+     * @return the encoded size in bytes.
+     */
+    public static int encodedSize(final int departmentId, final List<Employee> employees) {
+        int size = 1 + varIntSize(departmentId) + varIntSize(employees.size());
+        for (int i = 0; i < employees.size(); i++) {
+            size += employeeSize(employees.get(i));
+        }
+        return size;
+    }
+
+    private static void checkVersion(final ByteBuffer buffer) {
+        final int version = buffer.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported employee codec version " + version);
+        }
+    }
+
+    private static void writeEmployee(final Employee employee, final ByteBuffer buffer) {
+        writeVarInt(employee.getEmployeeId(), buffer);
+        final String email = employee.getEmail();
+        if (email == null) {
+            writeVarInt(NO_EMAIL, buffer);
+        } else {
+            writeVarInt(utf8Length(email) + 1, buffer);
+            writeUtf8(email, buffer);
+        }
+        writeVarLong(zigzag(employee.getSalary()), buffer);
+    }
+
+    private void readEmployee(final ByteBuffer buffer, final Employee into) {
+        into.setEmployeeId(readVarInt(buffer));
+        final int emailLength = readVarInt(buffer) - 1;
+        if (emailLength < -1 || emailLength > buffer.remaining()) {
+            throw new IllegalArgumentException("Malformed email length " + emailLength);
+        }
+        if (emailLength == -1) {
+            into.setEmail(null);
+        } else if (!isAsciiMatch(into.getEmail(), buffer, emailLength)) {
+            into.setEmail(readUtf8(buffer, emailLength));
+        }
+        buffer.position(buffer.position() + Math.max(emailLength, 0));
+        into.setSalary(unzigzag(readVarLong(buffer)));
+        into.markClean();
+    }
+
+    private static int employeeSize(final Employee employee) {
+        final String email = employee.getEmail();
+        final int emailSize;
+        if (email == null) {
+            emailSize = 1;
+        } else {
+            final int length = utf8Length(email);
+            emailSize = varIntSize(length + 1) + length;
+        }
+        return varIntSize(employee.getEmployeeId()) + emailSize + varLongSize(zigzag(employee.getSalary()));
+    }
+
+    /**
+     * Checks whether the email bytes at the buffer's position spell
+     * the current email, so it can be kept instead of decoded again.
+     */
+    private static boolean isAsciiMatch(final String current, final ByteBuffer buffer, final int length) {
+        if (current == null || current.length() != length) {
+            return false;
+        }
+        final int start = buffer.position();
+        for (int i = 0; i < length; i++) {
+            final char c = current.charAt(i);
+            if (c >= 0x80 || buffer.get(start + i) != (byte) c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readUtf8(final ByteBuffer buffer, final int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        final int start = buffer.position();
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counts the UTF-8 bytes of a string the way writeUtf8 encodes it,
+     * a lone surrogate becoming a single '?' like String.getBytes does.
+     */
+    static int utf8Length(final String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    static void writeUtf8(final String value, final ByteBuffer buffer) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static void writeVarInt(int value, final ByteBuffer buffer) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarInt(final ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static void writeVarLong(long value, final ByteBuffer buffer) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarLong(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int varIntSize(final int value) {
+        return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+    }
+
+    private static int varLongSize(final long value) {
+        return value == 0 ? 1 : (70 - Long.numberOfLeadingZeros(value)) / 7;
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
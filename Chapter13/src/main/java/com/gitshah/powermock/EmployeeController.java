@@ -54,12 +54,17 @@ public class EmployeeController {
      * This method is responsible to check if
      * the employee email is already taken or not.
      * It delegates this task to the employee service.
+     * Emails the service's Bloom filter knows to be unused
+     * are answered straight away.
      *
      * @param email The employee email to validate.
      * @return true if the employee email is taken,
      * false otherwise.
      */
     public boolean isEmployeeEmailAlreadyTaken(String email) {
+        if (employeeService.isEmailCertainlyUnused(email)) {
+            return false;
+        }
         return employeeService.employeeExists(new Employee(email));
     }
 }
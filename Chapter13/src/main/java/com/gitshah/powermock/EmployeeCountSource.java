@@ -0,0 +1,23 @@
+package com.gitshah.powermock;
+
+/**
+ * The authoritative source an EmployeeCounter is reconciled against.
+ */
+public interface EmployeeCountSource {
+
+    /**
+     * The source that asks the DB through the static count method on the Employee class.
+     */
+    EmployeeCountSource STORE = new EmployeeCountSource() {
+        @Override
+        public long count() {
+            return Employee.count();
+        }
+    };
+
+    /**
+     * Counts the employees in the system.
+     * @return the number of employees.
+     */
+    long count();
+}
@@ -0,0 +1,130 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The number of employees in the system kept in memory,
+ * so reading it does not query the DB.
+ * The count lives in a LongAdder, so concurrent creates and deletes
+ * do not contend on a single counter. It can be reconciled against
+ * an EmployeeCountSource now and then to correct drift from
+ * employees created or deleted behind the EmployeeService's back.
+ */
+public class EmployeeCounter implements Closeable {
+
+    private final LongAdder count = new LongAdder();
+    private final EmployeeCountSource source;
+
+    private volatile long lastDrift;
+    private ScheduledExecutorService reconciler;
+
+    /**
+     * The constructor that takes in the source to reconcile against.
+     * The count starts at zero until the first reconcile.
+     * @param source the authoritative employee count.
+     */
+    public EmployeeCounter(final EmployeeCountSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Records a created employee.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Records a deleted employee.
+     */
+    public void decrement() {
+        count.decrement();
+    }
+
+    /**
+     * Getter for the count.
+     * @return the number of employees in the system.
+     */
+    public long get() {
+        return count.sum();
+    }
+
+    /**
+     * Starts the count at a known value, such as the count of a snapshot,
+     * without querying the source. The next reconcile corrects it.
+     * @param value the number of employees in the system.
+     */
+    public void seed(final long value) {
+        count.add(value - count.sum());
+    }
+
+    /**
+     * Corrects the in-memory count to match the source.
+     * The correction is added rather than set, so creates and deletes
+     * recorded while the source is queried are not lost; one racing
+     * with the query may be off by one until the next reconcile.
+     * @return the drift corrected, positive if the count was too low.
+     */
+    public long reconcile() {
+        final long drift = source.count() - count.sum();
+        if (drift != 0) {
+            count.add(drift);
+        }
+        lastDrift = drift;
+        return drift;
+    }
+
+    /**
+     * Getter for the lastDrift.
+     * @return the drift corrected by the last reconcile.
+     */
+    public long getLastDrift() {
+        return lastDrift;
+    }
+
+    /**
+     * Reconciles the count on a background thread at a fixed period.
+     * A failing reconcile is retried at the next period.
+     * @param period the time between two reconciles.
+     * @param unit the unit of period.
+     */
+    public synchronized void startReconciliation(final long period, final TimeUnit unit) {
+        if (reconciler != null) {
+            throw new IllegalStateException("Reconciliation already started");
+        }
+        reconciler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "employee-count-reconciler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reconciler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    //Keeping the schedule alive, the next reconcile retries.
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops the background reconciliation, if started.
+     */
+    @Override
+    public synchronized void close() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            reconciler = null;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.gitshah.powermock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams employees from a CSV file into EmployeeService.saveEmployees.
+ * The file is read through a FileChannel into one reused buffer and
+ * parsed in place, so only the Employee and its email are created per row.
+ * Valid rows are saved in batches on an executor while parsing goes on,
+ * with at most maxInFlight rows parsed but not yet saved, so memory stays
+ * bounded however large the file. Invalid rows are reported and skipped.
+ * The first line is the header, either "email,salary" or
+ * "employeeId,email,salary" as written by the exporters, with an id of 0
+ * for new employees. Fields are not quoted, as none may contain a comma.
+ */
+public class EmployeeCsvImporter {
+
+    /**
+     * The header of files that carry employee ids.
+     */
+    public static final String HEADER = "employeeId,email,salary";
+
+    /**
+     * The header of files of new employees only.
+     */
+    public static final String SHORT_HEADER = "email,salary";
+
+    /**
+     * The default number of employees saved per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The default number of rows parsed but not yet saved.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+
+    /**
+     * The size of the read buffer, and so the longest line supported.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final EmployeeService employeeService;
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final CsvImportProgressListener progressListener;
+
+    /**
+     * The constructor that takes in where and how to save the employees.
+     * @param employeeService the service to save the employees with.
+     * @param executor the executor to save the batches on.
+     * @param batchSize the number of employees per saveEmployees call.
+     * @param maxInFlight the most rows parsed but not yet saved, at least batchSize.
+     * @param progressListener notified as batches are saved, null for none.
+     */
+    public EmployeeCsvImporter(final EmployeeService employeeService, final Executor executor,
+                               final int batchSize, final int maxInFlight,
+                               final CsvImportProgressListener progressListener) {
+        if (batchSize < 1 || maxInFlight < batchSize) {
+            throw new IllegalArgumentException("Need 0 < batchSize <= maxInFlight, got "
+                    + batchSize + " and " + maxInFlight);
+        }
+        this.employeeService = employeeService;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports every valid row of a CSV file.
+     * Returns or throws only once every batch handed to the executor was saved.
+     * @param path the CSV file.
+     * @return the report of the rows rejected, saved and failed.
+     * @throws IOException if the file cannot be read or its header is not recognized.
+     */
+    public CsvImportReport importFrom(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final Run run = new Run(new CsvImportReport(channel.size()));
+            try {
+                run.parse(channel);
+                run.submit();
+            } finally {
+                run.awaitInFlight();
+            }
+            run.report.finished();
+            return run.report;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * The state of one import.
+     */
+    private final class Run {
+
+        private final CsvImportReport report;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private List<Employee> batch = new ArrayList<Employee>(batchSize);
+
+        /**
+         * Whether the file has an employeeId column, known once the header was read.
+         */
+        private boolean hasEmployeeId;
+
+        private long line;
+
+        /**
+         * The file offset just past the line being parsed.
+         */
+        private long offset;
+
+        /**
+         * The file offset the batch being filled starts at.
+         */
+        private long batchStart;
+
+        private Run(final CsvImportReport report) {
+            this.report = report;
+        }
+
+        private void parse(final FileChannel channel) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            final byte[] bytes = buffer.array();
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                endOfFile = channel.read(buffer) < 0;
+                int start = 0;
+                final int limit = buffer.position();
+                for (int i = 0; i < limit; i++) {
+                    if (bytes[i] == '\n') {
+                        offset += i + 1 - start;
+                        parseLine(bytes, start, i);
+                        start = i + 1;
+                    }
+                }
+                if (endOfFile && start < limit) {
+                    offset += limit - start;
+                    parseLine(bytes, start, limit);
+                    start = limit;
+                }
+                if (start == 0 && limit == bytes.length) {
+                    throw new IOException("Line " + (line + 1) + " is longer than " + BUFFER_SIZE + " bytes");
+                }
+                buffer.position(start);
+                buffer.limit(limit);
+                buffer.compact();
+            }
+            if (line == 0) {
+                throw new IOException("Missing header");
+            }
+        }
+
+        private void parseLine(final byte[] bytes, final int start, int end) throws IOException {
+            line++;
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            if (line == 1) {
+                parseHeader(new String(bytes, start, end - start, StandardCharsets.UTF_8).trim());
+                return;
+            }
+            if (end == start) {
+                return;
+            }
+
+            int fieldStart = start;
+            final int employeeId;
+            if (hasEmployeeId) {
+                final int comma = indexOf(bytes, fieldStart, end);
+                final long id = parseNumber(bytes, fieldStart, comma);
+                if (id < 0 || id > Integer.MAX_VALUE) {
+                    report.rejected(line, "Invalid employeeId");
+                    return;
+                }
+                employeeId = (int) id;
+                fieldStart = comma + 1;
+            } else {
+                employeeId = 0;
+            }
+
+            final int emailEnd = indexOf(bytes, fieldStart, end);
+            if (emailEnd == end || indexOf(bytes, emailEnd + 1, end) != end) {
+                report.rejected(line, "Expected " + (hasEmployeeId ? 3 : 2) + " fields");
+                return;
+            }
+            final String reason = checkEmail(bytes, fieldStart, emailEnd);
+            if (reason != null) {
+                report.rejected(line, reason);
+                return;
+            }
+            final long salary = parseNumber(bytes, emailEnd + 1, end);
+            if (salary < 0) {
+                report.rejected(line, "Invalid salary");
+                return;
+            }
+
+            //Setting the email marks it dirty, so updating an existing employee writes it and reindexes it.
+            final Employee employee = new Employee();
+            employee.setEmail(new String(bytes, fieldStart, emailEnd - fieldStart, StandardCharsets.UTF_8));
+            employee.setEmployeeId(employeeId);
+            employee.setSalary(salary);
+            batch.add(employee);
+            if (batch.size() == batchSize) {
+                submit();
+            }
+        }
+
+        private void parseHeader(final String header) throws IOException {
+            if (HEADER.equals(header)) {
+                hasEmployeeId = true;
+            } else if (!SHORT_HEADER.equals(header)) {
+                throw new IOException("Expected a \"" + HEADER + "\" or \"" + SHORT_HEADER
+                        + "\" header, got \"" + header + "\"");
+            }
+        }
+
+        /**
+         * Hands the batch to the executor once there is room for it in flight.
+         */
+        private void submit() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            final List<Employee> employees = batch;
+            final long startOffset = batchStart;
+            final long endOffset = offset;
+            batch = new ArrayList<Employee>(batchSize);
+            batchStart = offset;
+            try {
+                inFlight.acquire(employees.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for employees in flight to be saved", e);
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            try {
+                                report.batchSaved(employeeService.saveEmployees(employees), startOffset, endOffset);
+                            } catch (RuntimeException e) {
+                                report.batchFailed(employees, e, startOffset, endOffset);
+                            }
+                            if (progressListener != null) {
+                                progressListener.progressed(report);
+                            }
+                        } finally {
+                            inFlight.release(employees.size());
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release(employees.size());
+                throw e;
+            }
+        }
+
+        private void awaitInFlight() {
+            inFlight.acquireUninterruptibly(maxInFlight);
+            inFlight.release(maxInFlight);
+        }
+    }
+
+    private static int indexOf(final byte[] bytes, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == ',') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Parses a non-negative decimal number in place.
+     * @return the number, -1 if the field is empty, not a number or overflows.
+     */
+    private static long parseNumber(final byte[] bytes, final int start, final int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Checks that an email has a single '@' with something on either side and no blanks.
+     * @return why the email is invalid, null if it is valid.
+     */
+    private static String checkEmail(final byte[] bytes, final int start, final int end) {
+        int at = -1;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == ' ' || bytes[i] == '\t') {
+                return "Blank in email";
+            }
+            if (bytes[i] == '@') {
+                if (at >= 0) {
+                    return "More than one @ in email";
+                }
+                at = i;
+            }
+        }
+        if (at <= start || at == end - 1) {
+            return "Invalid email";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,379 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the employees of departments to a channel, department by
+ * department in the order of their ids, as CSV readable by
+ * EmployeeCsvImporter or as EmployeeCodec department messages.
+ * Rows are encoded straight into one reused buffer, without a String
+ * per row, and the buffer is written out whenever it fills up,
+ * through a gzip stream if asked to, which is sync flushed along.
+ * The salary statistics of every department can be exported as well,
+ * as CSV rows to a separate channel so the employee output stays
+ * readable by EmployeeCsvImporter and EmployeeCodec.
+ * An employee without an email is exported as a CSV row with an empty
+ * email, which EmployeeCsvImporter rejects as invalid.
+ * An export that failed can be resumed from getLastDepartmentId, the last
+ * department whose rows all reached the output, after cutting the
+ * output back to getLastOffset with truncate, which drops the partial
+ * rows or department message written when it failed. A gzip stream cut
+ * short cannot be appended to, resume a gzipped export into a new file.
+ */
+public class EmployeeExporter implements Closeable {
+
+    /**
+     * The formats employees can be exported in.
+     */
+    public enum Format {
+        /** One "employeeId,email,salary" row per employee, after a header. */
+        CSV,
+        /** One EmployeeCodec department message per department. */
+        BINARY
+    }
+
+    /**
+     * The department id to export from the start with.
+     */
+    public static final int FROM_START = Integer.MIN_VALUE;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] CSV_HEADER = (EmployeeCsvImporter.HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The header of the salary statistics rows.
+     */
+    public static final String STATISTICS_HEADER = "departmentId,count,total,min,max,median,p90,p99";
+
+    private static final byte[] STATISTICS_CSV_HEADER = (STATISTICS_HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private static final int STATISTICS_BUFFER_SIZE = 8 * 1024;
+
+    private final WritableByteChannel output;
+    private final GZIPOutputStream gzip;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final EmployeeCodec codec = new EmployeeCodec();
+
+    private WritableByteChannel statisticsOutput;
+    private ByteBuffer statisticsBuffer;
+
+    /**
+     * The last department fully encoded into the buffer.
+     */
+    private int lastBufferedDepartmentId = FROM_START;
+
+    /**
+     * The last department whose rows all reached the output.
+     */
+    private int lastDepartmentId = FROM_START;
+
+    /**
+     * The offset of the output past everything written to it,
+     * counted before compression.
+     */
+    private long outputOffset;
+
+    /**
+     * The offset of the output just past the last department
+     * fully encoded into the buffer.
+     */
+    private long bufferedOffset;
+
+    /**
+     * The offset of the output just past the last department
+     * whose rows all reached it.
+     */
+    private long lastOffset;
+
+    private long statisticsOffset;
+
+    private long lastStatisticsOffset;
+
+    private long exportedCount;
+
+    /**
+     * The constructor that takes in the channel to export to,
+     * which the exporter closes when it is closed.
+     * The CSV header is only written to a channel that is not
+     * a seekable one with content already, so an export resumed
+     * by appending to a file does not repeat it. Offsets start
+     * at the size of such a channel.
+     * @param channel the channel to write to.
+     * @param format the format to write.
+     * @param gzip whether to compress the output with gzip.
+     * @throws IOException if the output cannot be set up.
+     */
+    public EmployeeExporter(final WritableByteChannel channel, final Format format, final boolean gzip)
+            throws IOException {
+        final long size = sizeOf(channel);
+        this.gzip = gzip ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE, true) : null;
+        this.output = gzip ? Channels.newChannel(this.gzip) : channel;
+        this.format = format;
+        this.outputOffset = gzip ? 0 : size;
+        if (format == Format.CSV && (size == 0 || gzip)) {
+            buffer.put(CSV_HEADER);
+        }
+        this.lastOffset = outputOffset;
+        this.bufferedOffset = outputOffset + buffer.position();
+    }
+
+    /**
+     * Cuts the output of a failed export back to the offset it reported,
+     * getLastOffset or getLastStatisticsOffset, so an export resumed by
+     * appending to it starts right after the last whole department.
+     * @param channel the output of the failed export.
+     * @param offset the offset to cut it back to.
+     * @throws IOException if the channel cannot be truncated.
+     */
+    public static void truncate(final SeekableByteChannel channel, final long offset) throws IOException {
+        if (offset < 0 || offset > channel.size()) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside of the "
+                    + channel.size() + " bytes written");
+        }
+        channel.truncate(offset);
+        channel.position(offset);
+    }
+
+    /**
+     * Exports the salary statistics of every department as well, one
+     * STATISTICS_HEADER row per department, to a channel which the
+     * exporter closes when it is closed. The header is only written
+     * to a channel that is not a seekable one with content already.
+     * @param channel the channel to write the statistics to.
+     * @throws IOException if the channel cannot be set up.
+     */
+    public void useStatisticsOutput(final WritableByteChannel channel) throws IOException {
+        if (exportedCount > 0 || lastBufferedDepartmentId != FROM_START) {
+            throw new IllegalStateException("Statistics must be asked for before exporting");
+        }
+        statisticsOutput = channel;
+        statisticsBuffer = ByteBuffer.allocate(STATISTICS_BUFFER_SIZE);
+        statisticsOffset = sizeOf(channel);
+        lastStatisticsOffset = statisticsOffset;
+        if (statisticsOffset == 0) {
+            statisticsBuffer.put(STATISTICS_CSV_HEADER);
+        }
+    }
+
+    /**
+     * Exports the employees of the departments with an id
+     * greater than afterDepartmentId, in the order of their ids.
+     * @param departments the departments to export.
+     * @param afterDepartmentId the last department already exported, FROM_START for none.
+     * @return the number of employees exported.
+     * @throws IOException if the output cannot be written.
+     */
+    public long export(final Collection<Department> departments, final int afterDepartmentId) throws IOException {
+        final List<Department> sorted = new ArrayList<Department>(departments);
+        Collections.sort(sorted, new Comparator<Department>() {
+            @Override
+            public int compare(Department left, Department right) {
+                return Integer.compare(left.getDepartmentId(), right.getDepartmentId());
+            }
+        });
+        final long before = exportedCount;
+        for (Department department : sorted) {
+            if (department.getDepartmentId() > afterDepartmentId) {
+                exportDepartment(department.getDepartmentId(), department.employees());
+            }
+        }
+        return exportedCount - before;
+    }
+
+    /**
+     * Exports the employees of one department.
+     * @param departmentId the id of the department.
+     * @param employees the employees of the department.
+     * @throws IOException if the output cannot be written.
+     */
+    public void exportDepartment(final int departmentId, final List<Employee> employees) throws IOException {
+        final SalaryStatistics statistics = statisticsOutput == null ? null : new SalaryStatistics();
+        if (format == Format.BINARY) {
+            ensureRoom(11);
+            codec.encodeDepartmentHeader(departmentId, employees.size(), buffer);
+        }
+        for (int i = 0; i < employees.size(); i++) {
+            final Employee employee = employees.get(i);
+            final String email = employee.getEmail();
+            //Worst cases: 3 bytes a char, and a CSV row of the longest id and salary with its separators,
+            //11 + 1 + 1 + 20 + 1 bytes, which is more than the 5 + 5 + 10 bytes of varints.
+            ensureRoom((email == null ? 0 : email.length() * 3) + 34);
+            if (format == Format.BINARY) {
+                codec.encodeDepartmentEmployee(employee, buffer);
+            } else {
+                writeCsvRow(employee);
+            }
+            if (statistics != null) {
+                statistics.add(employee.getSalary());
+            }
+            exportedCount++;
+        }
+        if (statistics != null) {
+            //Room for the separators and the digits of eight numbers.
+            if (statisticsBuffer.remaining() < 8 * 21) {
+                flush();
+            }
+            writeStatisticsRow(departmentId, statistics);
+        }
+        lastBufferedDepartmentId = departmentId;
+        bufferedOffset = outputOffset + buffer.position();
+    }
+
+    /**
+     * Writes everything buffered to the output, through to the
+     * channel when compressing, and the statistics buffered.
+     * @throws IOException if the output cannot be written.
+     */
+    public void flush() throws IOException {
+        outputOffset += drain(buffer, output);
+        if (gzip != null) {
+            gzip.flush();
+        }
+        if (statisticsOutput != null) {
+            statisticsOffset += drain(statisticsBuffer, statisticsOutput);
+        }
+        lastDepartmentId = lastBufferedDepartmentId;
+        lastOffset = bufferedOffset;
+        lastStatisticsOffset = statisticsOffset;
+    }
+
+    /**
+     * Getter for the lastDepartmentId.
+     * @return the id of the last department whose rows all reached the output,
+     * FROM_START if none did yet.
+     */
+    public int getLastDepartmentId() {
+        return lastDepartmentId;
+    }
+
+    /**
+     * Getter for the lastOffset.
+     * @return the offset of the output just past the last department whose
+     * rows all reached it, counted before compression.
+     */
+    public long getLastOffset() {
+        return lastOffset;
+    }
+
+    /**
+     * Getter for the lastStatisticsOffset.
+     * @return the offset of the statistics output just past the statistics
+     * of the last department whose rows all reached the output.
+     */
+    public long getLastStatisticsOffset() {
+        return lastStatisticsOffset;
+    }
+
+    /**
+     * Getter for the exportedCount.
+     * @return the number of employees exported so far.
+     */
+    public long getExportedCount() {
+        return exportedCount;
+    }
+
+    /**
+     * Flushes what is buffered, finishes the gzip stream if any
+     * and closes the channels.
+     * @throws IOException if the output cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                output.close();
+            } finally {
+                if (statisticsOutput != null) {
+                    statisticsOutput.close();
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(final WritableByteChannel channel) throws IOException {
+        return channel instanceof SeekableByteChannel ? ((SeekableByteChannel) channel).size() : 0;
+    }
+
+    private static int drain(final ByteBuffer source, final WritableByteChannel channel) throws IOException {
+        source.flip();
+        final int count = source.remaining();
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+        source.clear();
+        return count;
+    }
+
+    private void ensureRoom(final int bytes) throws IOException {
+        if (bytes > buffer.capacity()) {
+            throw new IllegalArgumentException("An employee of " + bytes + " bytes does not fit the export buffer");
+        }
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void writeCsvRow(final Employee employee) {
+        writeDigits(employee.getEmployeeId(), buffer);
+        buffer.put((byte) ',');
+        if (employee.getEmail() != null) {
+            EmployeeCodec.writeUtf8(employee.getEmail(), buffer);
+        }
+        buffer.put((byte) ',');
+        writeDigits(employee.getSalary(), buffer);
+        buffer.put((byte) '\n');
+    }
+
+    private void writeStatisticsRow(final int departmentId, final SalaryStatistics statistics) {
+        final long[] values = {statistics.getCount(), statistics.getTotal(), statistics.getMin(),
+                statistics.getMax(), statistics.getMedian(), statistics.getP90(), statistics.getPercentile(99)};
+        writeDigits(departmentId, statisticsBuffer);
+        for (long value : values) {
+            statisticsBuffer.put((byte) ',');
+            writeDigits(value, statisticsBuffer);
+        }
+        statisticsBuffer.put((byte) '\n');
+    }
+
+    /**
+     * Writes a number in decimal ASCII without going through a String.
+     */
+    private static void writeDigits(final long value, final ByteBuffer buffer) {
+        if (value == Long.MIN_VALUE) {
+            buffer.put("-9223372036854775808".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            buffer.put((byte) '-');
+            remaining = -remaining;
+        }
+        final int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        //The digits were written least significant first.
+        for (int left = start, right = buffer.position() - 1; left < right; left++, right--) {
+            final byte digit = buffer.get(left);
+            buffer.put(left, buffer.get(right));
+            buffer.put(right, digit);
+        }
+    }
+}
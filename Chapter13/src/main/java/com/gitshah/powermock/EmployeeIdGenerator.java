@@ -7,13 +7,49 @@ package com.gitshah.powermock;
  */
 public final class EmployeeIdGenerator {
 
+    /**
+     * The block allocator ids are handed out from,
+     * null until block allocation is switched on.
+     */
+    private static volatile BlockIdAllocator blockIdAllocator;
+
+    /**
+     * Switches the generator to block (hi/lo) allocation.
+     * Passing null switches block allocation off again.
+     * @param allocator the allocator to hand out ids from.
+     */
+    public static void useBlockAllocation(final BlockIdAllocator allocator) {
+        blockIdAllocator = allocator;
+    }
+
     /**
      * Static method that is responsible to generate
      * the next employee id.
      * @return The next employee id.
-     * Currently this method throws UnsupportedOperationException.
+     * Currently this method throws UnsupportedOperationException
+     * unless block allocation has been switched on.
      */
     public final static int getNextId() {
-        throw new UnsupportedOperationException();
+        final BlockIdAllocator allocator = blockIdAllocator;
+        if (allocator == null) {
+            throw new UnsupportedOperationException();
+        }
+        return allocator.nextId();
+    }
+
+    /**
+     * Static method that is responsible to reserve
+     * a contiguous range of employee ids in one call.
+     * @param count the number of ids to reserve.
+     * @return The first id of the range [first, first + count).
+     * Currently this method throws UnsupportedOperationException
+     * unless block allocation has been switched on.
+     */
+    public final static int getNextIds(final int count) {
+        final BlockIdAllocator allocator = blockIdAllocator;
+        if (allocator == null) {
+            throw new UnsupportedOperationException();
+        }
+        return allocator.reserveIds(count);
     }
 }
@@ -0,0 +1,69 @@
+package com.gitshah.powermock;
+
+/**
+ * An immutable copy of the persisted fields of an employee,
+ * as kept by the embedded repositories.
+ */
+public final class EmployeeRecord {
+
+    private final int employeeId;
+    private final String email;
+    private final long salary;
+
+    /**
+     * The constructor that takes in every persisted field.
+     * @param employeeId the employee id.
+     * @param email the employee email, may be null.
+     * @param salary the salary.
+     */
+    public EmployeeRecord(final int employeeId, final String email, final long salary) {
+        this.employeeId = employeeId;
+        this.email = email;
+        this.salary = salary;
+    }
+
+    /**
+     * Copies the persisted fields of an employee.
+     * @param employee the employee to copy.
+     * @return the record of the employee.
+     */
+    public static EmployeeRecord of(final Employee employee) {
+        return new EmployeeRecord(employee.getEmployeeId(), employee.getEmail(), employee.getSalary());
+    }
+
+    /**
+     * Creates a clean employee from this record.
+     * @return a new employee holding the fields of this record.
+     */
+    public Employee toEmployee() {
+        final Employee employee = new Employee(email);
+        employee.setEmployeeId(employeeId);
+        employee.setSalary(salary);
+        employee.markClean();
+        return employee;
+    }
+
+    /**
+     * Getter for the employeeId.
+     * @return the employee id.
+     */
+    public int getEmployeeId() {
+        return employeeId;
+    }
+
+    /**
+     * Getter for the email.
+     * @return the employee email, may be null.
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Getter for the salary.
+     * @return the salary.
+     */
+    public long getSalary() {
+        return salary;
+    }
+}
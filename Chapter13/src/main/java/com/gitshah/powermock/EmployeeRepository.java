@@ -0,0 +1,74 @@
+package com.gitshah.powermock;
+
+import java.util.List;
+
+/**
+ * The store Employee persists itself to.
+ * Installed with Employee.useRepository, after which the persistence
+ * methods of Employee delegate to it instead of throwing
+ * UnsupportedOperationException.
+ */
+public interface EmployeeRepository {
+
+    /**
+     * Counts the employees in the store.
+     * @return the number of employees.
+     */
+    int count();
+
+    /**
+     * Checks whether an employee is not yet in the store.
+     * @param employee the employee to check.
+     * @return true if the employee was never created or was deleted, false otherwise.
+     */
+    boolean isNew(Employee employee);
+
+    /**
+     * Adds a new employee to the store.
+     * @param employee the employee to create, with its id assigned.
+     */
+    void create(Employee employee);
+
+    /**
+     * Writes the changed fields of an existing employee to the store.
+     * @param employee the employee to update.
+     * @param fields the mask of Employee field bits that changed.
+     */
+    void update(Employee employee, int fields);
+
+    /**
+     * Removes an employee from the store.
+     * @param employee the employee to delete.
+     * @return true if the employee was removed, false if it was not in the store.
+     */
+    boolean delete(Employee employee);
+
+    /**
+     * Finds an employee by id.
+     * @param employeeId the id to look up.
+     * @return a fresh, clean copy of the stored employee, null if there is none.
+     */
+    Employee findById(int employeeId);
+
+    /**
+     * Finds an employee by email, in any case.
+     * @param email the email to look up.
+     * @return a fresh, clean copy of the stored employee, null if there is none.
+     */
+    Employee findByEmail(String email);
+
+    /**
+     * Lists the emails of the stored employees,
+     * so an EmployeeService can tell which emails are taken
+     * without looking each of them up.
+     * @return the emails of all stored employees that have one.
+     */
+    List<String> emails();
+
+    /**
+     * Increments the salary of every employee in the store.
+     * @param percentage the percentage value by which
+     *                   salaries would be increased
+     */
+    void giveIncrementOf(int percentage);
+}
@@ -1,5 +1,12 @@
 package com.gitshah.powermock;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * This class is responsible to handle the CRUD
  * operations on the Employee objects.
@@ -7,15 +14,198 @@ package com.gitshah.powermock;
  */
 public class EmployeeService {
 
+    /**
+     * The message every new employee is welcomed with.
+     */
+    private static final String WELCOME_MESSAGE = "Welcome to Mocking with PowerMock How-to!";
+
+    /**
+     * The outbox welcome emails are queued in,
+     * null when they are sent inline.
+     */
+    private final WelcomeEmailOutbox welcomeEmailOutbox;
+
+    /**
+     * The template welcome messages are rendered from,
+     * null when every employee gets the fixed welcome message.
+     */
+    private final WelcomeEmailTemplate welcomeEmailTemplate;
+
+    /**
+     * The pool welcome emails sent inline borrow their SMTP connection from,
+     * null when each opens its own.
+     */
+    private volatile SmtpConnectionPool smtpConnectionPool;
+
+    /**
+     * The index of saved employees by their email.
+     */
+    private final EmailIndex emailIndex = new EmailIndex();
+
+    /**
+     * The number of employees the default email Bloom filter is sized for.
+     */
+    private static final int DEFAULT_EXPECTED_EMPLOYEES = 100000;
+
+    /**
+     * The false positive rate of the default email Bloom filter.
+     */
+    private static final double DEFAULT_EMAIL_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * The Bloom filter over the emails of all saved employees,
+     * null for a service that passes every call on to another.
+     */
+    private volatile EmailBloomFilter emailBloomFilter;
+
+    /**
+     * Held while an email is indexed and while the Bloom filter is replaced,
+     * so no email is added to a filter that is about to be dropped.
+     */
+    private final Object emailBloomFilterLock = new Object();
+
+    /**
+     * The repository whose emails were added to the Bloom filter,
+     * null until a repository was seen in use.
+     */
+    private volatile EmployeeRepository emailsLoadedFrom;
+
+    /**
+     * The in-memory employee count,
+     * null when every count queries the DB.
+     */
+    private volatile EmployeeCounter employeeCounter;
+
+    /**
+     * The mapped snapshot lookups fall back to,
+     * null when only saved employees are found.
+     */
+    private volatile EmployeeSnapshot snapshot;
+
+    /**
+     * The normalized emails of snapshot employees that were
+     * deleted or changed their email since the snapshot was taken.
+     */
+    private final Set<String> removedFromSnapshot = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The buffer each thread renders welcome messages into.
+     */
+    private final ThreadLocal<StringBuilder> welcomeMessageBuffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    /**
+     * The default constructor,
+     * welcome emails are sent inline.
+     */
+    public EmployeeService() {
+        this(null);
+    }
+
+    /**
+     * The constructor that takes in the outbox
+     * welcome emails are queued in.
+     * @param welcomeEmailOutbox the outbox to queue welcome emails in.
+     */
+    public EmployeeService(WelcomeEmailOutbox welcomeEmailOutbox) {
+        this(welcomeEmailOutbox, null);
+    }
+
+    /**
+     * The constructor that takes in the outbox
+     * welcome emails are queued in and the template
+     * they are rendered from.
+     * @param welcomeEmailOutbox the outbox to queue welcome emails in,
+     *                           null to send them inline.
+     * @param welcomeEmailTemplate the template to render welcome messages from.
+     */
+    public EmployeeService(WelcomeEmailOutbox welcomeEmailOutbox, WelcomeEmailTemplate welcomeEmailTemplate) {
+        this(welcomeEmailOutbox, welcomeEmailTemplate,
+                new EmailBloomFilter(DEFAULT_EXPECTED_EMPLOYEES, DEFAULT_EMAIL_FALSE_POSITIVE_RATE));
+    }
+
+    /**
+     * The constructor that also takes in the email Bloom filter.
+     * A service that passes every call on to another,
+     * such as CachingEmployeeService, passes null
+     * so it does not size a filter it never uses.
+     * @param welcomeEmailOutbox the outbox to queue welcome emails in,
+     *                           null to send them inline.
+     * @param welcomeEmailTemplate the template to render welcome messages from.
+     * @param emailBloomFilter the Bloom filter over the emails of saved employees.
+     */
+    EmployeeService(WelcomeEmailOutbox welcomeEmailOutbox, WelcomeEmailTemplate welcomeEmailTemplate,
+                    EmailBloomFilter emailBloomFilter) {
+        this.welcomeEmailOutbox = welcomeEmailOutbox;
+        this.welcomeEmailTemplate = welcomeEmailTemplate;
+        this.emailBloomFilter = emailBloomFilter;
+    }
+
     /**
      * This method is responsible to return
      * the count of employees in the system.
      * It does it by calling the
-     * static count method on the Employee class.
+     * static count method on the Employee class,
+     * unless an in-memory employee counter is in use.
      * @return Total number of employees in the system.
      */
     public int getEmployeeCount() {
-        return Employee.count();
+        final EmployeeCounter counter = employeeCounter;
+        if (counter == null) {
+            return Employee.count();
+        }
+        return (int) counter.get();
+    }
+
+    /**
+     * Serves the employee count from an in-memory counter,
+     * reconciled against its source right away.
+     * Employees created and deleted through this service keep it up to date.
+     * @param employeeCounter the counter to use.
+     */
+    public void useEmployeeCounter(EmployeeCounter employeeCounter) {
+        employeeCounter.reconcile();
+        this.employeeCounter = employeeCounter;
+    }
+
+    /**
+     * Getter for the employeeCounter.
+     * @return the in-memory employee count, null if none is in use.
+     */
+    public EmployeeCounter getEmployeeCounter() {
+        return employeeCounter;
+    }
+
+    /**
+     * Serves lookups of employees not saved through this service
+     * from a mapped snapshot.
+     * Employees saved and deleted through this service
+     * take precedence over the snapshot.
+     * Unless an employee counter is in use already, one is started
+     * from the snapshot's count instead of querying the DB;
+     * it reconciles against the DB, should reconciliation be started.
+     * @param snapshot the snapshot to use.
+     */
+    public void useSnapshot(final EmployeeSnapshot snapshot) {
+        removedFromSnapshot.clear();
+        this.snapshot = snapshot;
+        if (employeeCounter == null) {
+            final EmployeeCounter counter = new EmployeeCounter(EmployeeCountSource.STORE);
+            counter.seed(snapshot.count());
+            employeeCounter = counter;
+        }
+    }
+
+    /**
+     * Getter for the snapshot.
+     * @return the mapped snapshot, null if none is in use.
+     */
+    public EmployeeSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
@@ -37,6 +227,25 @@ public class EmployeeService {
         }
     }
 
+    /**
+     * This method is responsible to increment the salary
+     * of the given employees by the given percentage,
+     * in parallel chunks on the common fork/join pool.
+     * Unlike giveIncrementToAllEmployeesOf, an employee that fails
+     * to update does not fail the others; it keeps its old salary
+     * and is listed in the report.
+     * @param employees the employees to increment.
+     * @param percentage the percentage value by which
+     *                   salaries would be increased
+     * @param progressListener notified as chunks finish, null for none.
+     * @return the report of which employees were incremented and which failed.
+     */
+    public BulkIncrementReport giveIncrementTo(List<Employee> employees, int percentage,
+                                               SalaryIncrementProgressListener progressListener) {
+        return new BulkSalaryIncrement(employees, percentage, BulkSalaryIncrement.DEFAULT_CHUNK_SIZE, progressListener)
+                .run(ForkJoinPool.commonPool());
+    }
+
     /**
      * The method that will save
      * the employee instance to the DB.
@@ -47,7 +256,86 @@ public class EmployeeService {
             createEmployee(employee);
             return;
         }
-        employee.update();
+        updateEmployee(employee);
+    }
+
+    /**
+     * The method that will save a batch of
+     * employee instances to the DB.
+     * The employees are split into new and existing ones in one pass,
+     * the ids for all new employees are reserved in one call
+     * and the creates and updates are then issued group by group.
+     * An employee that fails to save does not stop the rest of the batch.
+     * @param employees the instances to save.
+     * @return the report of how many employees were created and updated
+     * and which ones failed.
+     */
+    public BatchSaveReport saveEmployees(Collection<Employee> employees) {
+        final BatchSaveReport report = new BatchSaveReport();
+        final List<Employee> newEmployees = new ArrayList<Employee>();
+        final List<Employee> existingEmployees = new ArrayList<Employee>();
+        for (Employee employee : employees) {
+            try {
+                if (employee.isNew()) {
+                    newEmployees.add(employee);
+                } else {
+                    existingEmployees.add(employee);
+                }
+            } catch (Exception e) {
+                report.failed(employee, e);
+            }
+        }
+
+        createEmployees(newEmployees, report);
+
+        for (Employee employee : existingEmployees) {
+            try {
+                updateEmployee(employee);
+                report.updated();
+            } catch (Exception e) {
+                report.failed(employee, e);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Creates all new employees of a batch
+     * using ids reserved in a single generator call.
+     * @param newEmployees the employees to create.
+     * @param report the report to record the outcome in.
+     */
+    private void createEmployees(List<Employee> newEmployees, BatchSaveReport report) {
+        if (newEmployees.isEmpty()) {
+            return;
+        }
+        final int firstId;
+        try {
+            firstId = EmployeeIdGenerator.getNextIds(newEmployees.size());
+        } catch (Exception e) {
+            for (Employee employee : newEmployees) {
+                report.failed(employee, e);
+            }
+            return;
+        }
+        for (int i = 0; i < newEmployees.size(); i++) {
+            final Employee employee = newEmployees.get(i);
+            try {
+                employee.setEmployeeId(firstId + i);
+                employee.create();
+            } catch (Exception e) {
+                report.failed(employee, e);
+                continue;
+            }
+            countCreated();
+            indexEmail(employee);
+            report.created();
+            try {
+                sendWelcomeEmail(employee);
+            } catch (Exception e) {
+                report.welcomeEmailFailed(employee, e);
+            }
+        }
     }
 
     /**
@@ -56,34 +344,263 @@ public class EmployeeService {
      * This method is only responsible
      * to do things that are required
      * to create a new employee.
+     * The employee is indexed before it is welcomed,
+     * so it can be found even if the welcome email fails.
      * @param employee instance to save.
      */
     private void createEmployee(Employee employee) {
         employee.setEmployeeId(EmployeeIdGenerator.getNextId());
         employee.create();
-        WelcomeEmail emailSender = new WelcomeEmail(employee,
-                "Welcome to Mocking with PowerMock How-to!");
+        countCreated();
+        indexEmail(employee);
+        sendWelcomeEmail(employee);
+    }
+
+    /**
+     * Updates an existing employee, which writes only its changed fields,
+     * and moves it in the email index if its email changed.
+     * An employee built from its id alone, as an imported row is,
+     * does not know its previous email, so it is read from the repository.
+     * @param employee instance to update.
+     */
+    private void updateEmployee(Employee employee) {
+        String previousEmail = employee.getCleanEmail();
+        final EmployeeRepository repository = Employee.repositoryInUse();
+        if (previousEmail == null && employee.isDirty(Employee.EMAIL) && repository != null) {
+            final Employee stored = repository.findById(employee.getEmployeeId());
+            previousEmail = stored == null ? null : stored.getEmail();
+        }
+        employee.update();
+        if (previousEmail != null && !previousEmail.equals(employee.getEmail())) {
+            final Employee indexed = emailIndex.get(previousEmail);
+            if (indexed != null && indexed.getEmployeeId() == employee.getEmployeeId()) {
+                emailIndex.remove(previousEmail);
+            }
+            removeFromSnapshot(previousEmail);
+        }
+        indexEmail(employee);
+    }
+
+    /**
+     * The method that will delete
+     * the employee instance from the DB
+     * and drop it from the email index.
+     * @param employee instance to delete.
+     */
+    public void deleteEmployee(Employee employee) {
+        final boolean deleted = employee.delete();
+        emailIndex.remove(employee.getEmail());
+        removeFromSnapshot(employee.getEmail());
+        final EmployeeCounter counter = employeeCounter;
+        if (deleted && counter != null) {
+            counter.decrement();
+        }
+    }
+
+    /**
+     * Records a created employee in the in-memory count, if one is in use.
+     */
+    private void countCreated() {
+        final EmployeeCounter counter = employeeCounter;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Sends the welcome email to a newly created employee,
+     * or queues it when an outbox is configured.
+     * @param employee the employee to welcome.
+     */
+    private void sendWelcomeEmail(Employee employee) {
+        final String message = welcomeMessageFor(employee);
+        if (welcomeEmailOutbox != null) {
+            welcomeEmailOutbox.enqueue(employee, message);
+            return;
+        }
+        final SmtpConnectionPool pool = smtpConnectionPool;
+        WelcomeEmail emailSender = pool == null
+                ? new WelcomeEmail(employee, message)
+                : new WelcomeEmail(employee, message, pool);
         emailSender.send();
     }
 
+    /**
+     * Sends the welcome emails that are not queued in an outbox
+     * over SMTP connections borrowed from a pool.
+     * @param smtpConnectionPool the pool to borrow the SMTP connections from.
+     */
+    public void useSmtpConnectionPool(SmtpConnectionPool smtpConnectionPool) {
+        this.smtpConnectionPool = smtpConnectionPool;
+    }
+
+    /**
+     * Renders the welcome message for an employee
+     * into this thread's reusable buffer.
+     * @param employee the employee to welcome.
+     * @return the welcome message.
+     */
+    private String welcomeMessageFor(Employee employee) {
+        if (welcomeEmailTemplate == null) {
+            return WELCOME_MESSAGE;
+        }
+        final StringBuilder buffer = welcomeMessageBuffer.get();
+        buffer.setLength(0);
+        return welcomeEmailTemplate.render(employee, null, buffer).toString();
+    }
+
     /**
      * Finds the employee by email.
-     * Currently this method throws UnsupportedOperationException.
+     * The lookup is served from the in-memory email index,
+     * which ignores case and is kept in sync by saveEmployee,
+     * then from the snapshot if one is in use, and then from the
+     * repository in use, for employees saved before it was reopened.
      * @param email the employee email to search.
-     * @return Employee matching the email.
+     * @return Employee matching the email, null if none was saved with that email.
      */
     public Employee findEmployeeByEmail(String email) {
-        throw new UnsupportedOperationException();
+        final Employee employee = emailIndex.get(email);
+        if (employee != null) {
+            return employee;
+        }
+        if (isInSnapshot(email)) {
+            return snapshot.findByEmail(email);
+        }
+        return findStored(email);
+    }
+
+    /**
+     * Getter for the emailIndex.
+     * @return the index of saved employees by email, with its hit and miss counts.
+     */
+    public EmailIndex getEmailIndex() {
+        return emailIndex;
     }
 
     /**
      * The method that will check whether
      * the employee exists based on various criterion's.
-     * Currently this method throws UnsupportedOperationException.
+     * An employee exists when an employee with the same email was saved,
+     * is in the snapshot or is in the repository in use.
      * @param employee the employee instance to match.
      * @return true if th employee exists, false otherwise.
      */
     public boolean employeeExists(Employee employee) {
-        throw new UnsupportedOperationException();
+        final String email = employee.getEmail();
+        loadRepositoryEmails();
+        if (emailBloomFilter.mightContain(email) && emailIndex.contains(email)) {
+            return true;
+        }
+        return isInSnapshot(email) || findStored(email) != null;
+    }
+
+    /**
+     * Checks the email Bloom filter to find out
+     * whether an email is certainly unused.
+     * The filter holds the emails of the repository in use as well,
+     * and the snapshot, if one is in use, is searched too.
+     * @param email the email to check.
+     * @return true if no employee was saved with the email,
+     * false if one may have been.
+     */
+    public boolean isEmailCertainlyUnused(String email) {
+        loadRepositoryEmails();
+        return !emailBloomFilter.mightContain(email) && !isInSnapshot(email);
+    }
+
+    /**
+     * Replaces the email Bloom filter with one sized for
+     * the expected number of employees, filled with the emails saved so far.
+     * Emails indexed meanwhile wait until the new filter is in place.
+     * @param expectedEmployees the number of employees expected.
+     * @param falsePositiveRate the acceptable false positive rate, between 0 and 1.
+     */
+    public void useEmailBloomFilter(long expectedEmployees, double falsePositiveRate) {
+        final EmailBloomFilter filter = new EmailBloomFilter(expectedEmployees, falsePositiveRate);
+        synchronized (emailBloomFilterLock) {
+            for (String email : emailIndex.emails()) {
+                filter.add(email);
+            }
+            final EmployeeRepository repository = emailsLoadedFrom;
+            if (repository != null) {
+                for (String email : repository.emails()) {
+                    filter.add(email);
+                }
+            }
+            emailBloomFilter = filter;
+        }
+    }
+
+    /**
+     * Adds the emails of the repository in use to the Bloom filter
+     * the first time the repository is seen, so emails saved before
+     * it was reopened are not taken for unused.
+     * @return the repository in use, null if none is.
+     */
+    private EmployeeRepository loadRepositoryEmails() {
+        final EmployeeRepository repository = Employee.repositoryInUse();
+        if (repository == null || repository == emailsLoadedFrom) {
+            return repository;
+        }
+        synchronized (emailBloomFilterLock) {
+            if (repository != emailsLoadedFrom) {
+                for (String email : repository.emails()) {
+                    emailBloomFilter.add(email);
+                }
+                emailsLoadedFrom = repository;
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * Finds an employee the email index has not seen in the repository in use,
+     * and indexes it so the next lookup is served from memory.
+     * @param email the employee email to search.
+     * @return the stored employee, null if none is stored with that email.
+     */
+    private Employee findStored(String email) {
+        final EmployeeRepository repository = loadRepositoryEmails();
+        if (repository == null || !emailBloomFilter.mightContain(email)) {
+            return null;
+        }
+        final Employee stored = repository.findByEmail(email);
+        if (stored != null) {
+            indexEmail(stored);
+        }
+        return stored;
+    }
+
+    /**
+     * Adds a saved employee to the email index and the email Bloom filter.
+     * @param employee the saved employee.
+     */
+    private void indexEmail(Employee employee) {
+        synchronized (emailBloomFilterLock) {
+            emailBloomFilter.add(employee.getEmail());
+            emailIndex.put(employee);
+        }
+    }
+
+    /**
+     * Checks whether an email belongs to a snapshot employee
+     * that was not deleted or renamed since.
+     * @param email the email to check.
+     * @return true if the snapshot still has the employee, false otherwise.
+     */
+    private boolean isInSnapshot(String email) {
+        final EmployeeSnapshot current = snapshot;
+        return current != null && email != null
+                && !removedFromSnapshot.contains(EmailIndex.normalize(email)) && current.contains(email);
+    }
+
+    /**
+     * Hides a snapshot employee from lookups by email.
+     * @param email the email the employee had.
+     */
+    private void removeFromSnapshot(String email) {
+        if (snapshot != null && email != null) {
+            removedFromSnapshot.add(EmailIndex.normalize(email));
+        }
     }
 }
@@ -0,0 +1,290 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only file of employees that is served straight from a memory
+ * mapping, so opening it costs no loading and the pages are shared
+ * through the page cache by every process that maps the same file.
+ * The file holds a header, a table of fixed-width records, an index of
+ * the records sorted by normalized email and a heap of length-prefixed
+ * UTF-8 strings. Looking up an email is a binary search comparing bytes
+ * in the mapping.
+ * Files are limited to 2GB, the most a single mapping can hold.
+ */
+public class EmployeeSnapshot implements Closeable {
+
+    private static final int MAGIC = 0x45534D50;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 8;
+    private static final int NO_EMAIL = -1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+    private final int count;
+    private final int indexCount;
+    private final int indexOffset;
+    private final int heapOffset;
+
+    private EmployeeSnapshot(final FileChannel channel, final MappedByteBuffer mapping) throws IOException {
+        this.channel = channel;
+        this.mapping = mapping;
+        if (mapping.capacity() < HEADER_BYTES || mapping.getInt(0) != MAGIC) {
+            throw new IOException("Not an employee snapshot");
+        }
+        if (mapping.getInt(4) != VERSION) {
+            throw new IOException("Unsupported employee snapshot version " + mapping.getInt(4));
+        }
+        this.count = mapping.getInt(8);
+        this.indexCount = mapping.getInt(12);
+        this.indexOffset = mapping.getInt(16);
+        this.heapOffset = mapping.getInt(20);
+        //Computed in long so that huge counts in a corrupt header cannot wrap around to offsets that fit.
+        if (count < 0 || indexCount < 0
+                || indexOffset != HEADER_BYTES + (long) count * RECORD_BYTES
+                || heapOffset != indexOffset + (long) indexCount * INDEX_ENTRY_BYTES
+                || indexOffset > mapping.capacity() || heapOffset > mapping.capacity()) {
+            throw new IOException("Corrupt employee snapshot header");
+        }
+    }
+
+    /**
+     * Maps a snapshot file.
+     * @param path the snapshot file.
+     * @return the mapped snapshot.
+     * @throws IOException if the file cannot be mapped or is not a snapshot.
+     */
+    public static EmployeeSnapshot open(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new EmployeeSnapshot(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a snapshot file, replacing it atomically if it exists.
+     * Of several records whose emails normalize the same,
+     * only the last one is findable by email.
+     * @param path the snapshot file.
+     * @param records the employees to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(final Path path, final Collection<EmployeeRecord> records) throws IOException {
+        final StringHeap heap = new StringHeap();
+        final ByteBuffer table = ByteBuffer.allocate(records.size() * RECORD_BYTES);
+        final Map<String, int[]> keys = new LinkedHashMap<String, int[]>();
+        int row = 0;
+        for (EmployeeRecord record : records) {
+            table.putInt(record.getEmployeeId());
+            table.putInt(record.getEmail() == null ? NO_EMAIL : heap.add(record.getEmail()));
+            table.putLong(record.getSalary());
+            final String key = EmailIndex.normalize(record.getEmail());
+            if (key != null) {
+                keys.put(key, new int[]{heap.add(key), row});
+            }
+            row++;
+        }
+
+        final List<Map.Entry<String, int[]>> sorted = new ArrayList<Map.Entry<String, int[]>>(keys.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<String, int[]>>() {
+            @Override
+            public int compare(Map.Entry<String, int[]> left, Map.Entry<String, int[]> right) {
+                return compareBytes(left.getKey().getBytes(StandardCharsets.UTF_8),
+                        right.getKey().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        final ByteBuffer index = ByteBuffer.allocate(sorted.size() * INDEX_ENTRY_BYTES);
+        for (Map.Entry<String, int[]> entry : sorted) {
+            index.putInt(entry.getValue()[0]);
+            index.putInt(entry.getValue()[1]);
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(records.size()).putInt(sorted.size());
+        header.putInt(HEADER_BYTES + table.capacity());
+        header.putInt(HEADER_BYTES + table.capacity() + index.capacity());
+
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            final FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try {
+                for (ByteBuffer part : new ByteBuffer[]{header, table, index, heap.toByteBuffer()}) {
+                    part.flip();
+                    while (part.hasRemaining()) {
+                        channel.write(part);
+                    }
+                }
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Getter for the count.
+     * @return the number of employees in the snapshot.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Reads a record.
+     * @param row the row of the record, from 0 to count - 1.
+     * @return the record.
+     */
+    public EmployeeRecord getRecord(final int row) {
+        if (row < 0 || row >= count) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + count);
+        }
+        final int offset = HEADER_BYTES + row * RECORD_BYTES;
+        final int emailOffset = mapping.getInt(offset + 4);
+        return new EmployeeRecord(mapping.getInt(offset),
+                emailOffset == NO_EMAIL ? null : readString(emailOffset), mapping.getLong(offset + 8));
+    }
+
+    /**
+     * Finds the employee with an email, ignoring case.
+     * @param email the email to look up.
+     * @return a fresh, clean copy of the employee, null if there is none.
+     */
+    public Employee findByEmail(final String email) {
+        final int row = rowOf(email);
+        return row < 0 ? null : getRecord(row).toEmployee();
+    }
+
+    /**
+     * Checks whether an employee with an email is in the snapshot, ignoring case.
+     * @param email the email to look up.
+     * @return true if there is one, false otherwise.
+     */
+    public boolean contains(final String email) {
+        return rowOf(email) >= 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Binary searches the email index.
+     * @return the row of the record, -1 if the email is not in the snapshot.
+     */
+    private int rowOf(final String email) {
+        final String key = EmailIndex.normalize(email);
+        if (key == null) {
+            return -1;
+        }
+        final byte[] wanted = key.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = indexCount - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int entry = indexOffset + middle * INDEX_ENTRY_BYTES;
+            final int comparison = compareToHeap(mapping.getInt(entry), wanted);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return mapping.getInt(entry + 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the string at a heap offset with the wanted bytes,
+     * unsigned byte by byte, the order the index was sorted in.
+     */
+    private int compareToHeap(final int offset, final byte[] wanted) {
+        final int start = heapOffset + offset;
+        final int length = mapping.getInt(start);
+        final int common = Math.min(length, wanted.length);
+        for (int i = 0; i < common; i++) {
+            final int difference = (mapping.get(start + 4 + i) & 0xFF) - (wanted[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - wanted.length;
+    }
+
+    private String readString(final int offset) {
+        final int start = heapOffset + offset;
+        final byte[] bytes = new byte[mapping.getInt(start)];
+        final ByteBuffer view = mapping.duplicate();
+        view.position(start + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int compareBytes(final byte[] left, final byte[] right) {
+        final int common = Math.min(left.length, right.length);
+        for (int i = 0; i < common; i++) {
+            final int difference = (left[i] & 0xFF) - (right[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    /**
+     * The string heap of a snapshot being written.
+     */
+    private static final class StringHeap {
+
+        private ByteBuffer bytes = ByteBuffer.allocate(4096);
+
+        /**
+         * Appends a length-prefixed string.
+         * @return the offset of the string in the heap.
+         */
+        private int add(final String value) {
+            final byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.remaining() < 4 + encoded.length) {
+                final ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes.capacity() * 2, bytes.position() + 4 + encoded.length));
+                bytes.flip();
+                larger.put(bytes);
+                bytes = larger;
+            }
+            final int offset = bytes.position();
+            bytes.putInt(encoded.length);
+            bytes.put(encoded);
+            return offset;
+        }
+
+        private ByteBuffer toByteBuffer() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.gitshah.powermock;
+
+/**
+ * A count-min sketch estimating how often keys were seen recently,
+ * used by the WTinyLfuCache to decide which entries to admit.
+ * Counters are 4 bits wide and packed 16 to a long, one long per cache entry.
+ * A key has a counter in each of four longs, each taken from a different
+ * quarter of its long so the four estimates stay independent.
+ * Counters saturate at 15 and are all halved once the sketch has
+ * seen ten times as many keys as the cache holds, so old popularity fades.
+ */
+class FrequencySketch {
+
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_WIDTH = 1 << 30;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = {0x97cb3127, 0xb4b82e0d, 0x5f8e5e7b, 0x1b873593};
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * The constructor that sizes the sketch for a cache.
+     * @param maximumSize the maximum number of entries of the cache.
+     */
+    FrequencySketch(final int maximumSize) {
+        final int width = Integer.highestOneBit(Math.min(Math.max(16, maximumSize), MAX_WIDTH) - 1) << 1;
+        this.table = new long[width];
+        this.mask = width - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(1, maximumSize), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Records one occurrence of a key.
+     * @param key the key seen.
+     */
+    void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < ROWS; row++) {
+            final int index = indexOf(hash, row);
+            final int shift = shiftOf(hash, row);
+            if (((table[index] >>> shift) & MAX_COUNT) < MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates how often a key was seen.
+     * @param key the key to look up.
+     * @return the estimated frequency, between 0 and 15.
+     */
+    int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++) {
+            final int count = (int) ((table[indexOf(hash, row)] >>> shiftOf(hash, row)) & MAX_COUNT);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Getter for the width.
+     * @return the number of longs in the table.
+     */
+    int getWidth() {
+        return table.length;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(final int hash, final int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    /**
+     * The bit offset of a key's counter for a row,
+     * one of the four counters in that row's quarter of the long.
+     */
+    private static int shiftOf(final int hash, final int row) {
+        return ((row << 2) + ((hash >>> (row << 3)) & 3)) << 2;
+    }
+
+    private static int spread(final int hash) {
+        final int h = hash * 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
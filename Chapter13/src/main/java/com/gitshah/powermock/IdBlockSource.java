@@ -0,0 +1,18 @@
+package com.gitshah.powermock;
+
+/**
+ * The source of employee id blocks.
+ * Every call to reserveBlock hands out a
+ * fresh range of ids that has never been
+ * handed out before.
+ */
+public interface IdBlockSource {
+
+    /**
+     * Reserves the next block of ids.
+     * @param blockSize the number of ids to reserve.
+     * @return the first id of the reserved block,
+     * the block spans [first, first + blockSize).
+     */
+    long reserveBlock(int blockSize);
+}
@@ -0,0 +1,38 @@
+package com.gitshah.powermock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The IdBlockSource that keeps its high-water mark in memory only.
+ * Ids handed out by this source are unique for the lifetime of the process.
+ */
+public class InMemoryIdBlockSource implements IdBlockSource {
+
+    /**
+     * The first id of the next block to reserve.
+     */
+    private final AtomicLong nextBlockStart;
+
+    /**
+     * The default constructor, ids start at 1.
+     */
+    public InMemoryIdBlockSource() {
+        this(1);
+    }
+
+    /**
+     * The constructor that takes in the first id to hand out.
+     * @param firstId the first id of the first block.
+     */
+    public InMemoryIdBlockSource(final long firstId) {
+        this.nextBlockStart = new AtomicLong(firstId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long reserveBlock(final int blockSize) {
+        return nextBlockStart.getAndAdd(blockSize);
+    }
+}
@@ -0,0 +1,32 @@
+package com.gitshah.powermock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fake SMTP server that keeps every welcome email in memory
+ * instead of relaying it. Meant to be used in tests.
+ */
+public class InMemorySmtpSink implements WelcomeEmailSender {
+
+    /**
+     * The emails delivered so far.
+     */
+    private final List<WelcomeEmailTask> delivered = new ArrayList<WelcomeEmailTask>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void send(final List<WelcomeEmailTask> tasks) {
+        delivered.addAll(tasks);
+    }
+
+    /**
+     * Getter for the delivered emails.
+     * @return a copy of the emails delivered so far.
+     */
+    public synchronized List<WelcomeEmailTask> getDelivered() {
+        return new ArrayList<WelcomeEmailTask>(delivered);
+    }
+}
@@ -0,0 +1,321 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An embedded EmployeeRepository that appends every change to a
+ * SegmentedEmployeeLog and serves reads from an in-memory index
+ * of the latest record per id.
+ * Opening the repository replays the latest snapshot and the log tail
+ * to rebuild the index, and the index of ids by email. Once enough segments were sealed since the last
+ * snapshot the log is compacted into a new one, so neither the disk usage
+ * nor the startup time grows with the number of updates.
+ * Writes reach the OS before a method returns, call sync to force them to disk.
+ * It can also act as the EmployeeBatchWriter of a WriteBehindQueue,
+ * appending a whole batch with a single write.
+ */
+public class LogEmployeeRepository implements EmployeeRepository, EmployeeBatchWriter, Closeable {
+
+    /**
+     * The default size a log segment is sealed at.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The default number of segments that triggers a compaction.
+     */
+    public static final int DEFAULT_COMPACTION_SEGMENTS = 8;
+
+    private final Map<Integer, EmployeeRecord> index = new HashMap<Integer, EmployeeRecord>();
+
+    /**
+     * The ids of the stored employees by normalized email.
+     */
+    private final Map<String, Integer> idsByEmail = new HashMap<String, Integer>();
+    private final SegmentedEmployeeLog log;
+    private final int compactionSegments;
+    private IOException lastCompactionFailure;
+
+    /**
+     * The constructor that opens the log with the default segment size
+     * and compaction threshold, creating it if needed.
+     * @param directory the directory of the log.
+     * @throws IOException if the log cannot be read.
+     */
+    public LogEmployeeRepository(final Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_SEGMENTS);
+    }
+
+    /**
+     * The constructor that opens the log, creating it if needed,
+     * and replays it into the index.
+     * @param directory the directory of the log.
+     * @param segmentSize the size a log segment is sealed at.
+     * @param compactionSegments the number of segments on disk that triggers a compaction.
+     * @throws IOException if the log cannot be read.
+     */
+    public LogEmployeeRepository(final Path directory, final int segmentSize, final int compactionSegments)
+            throws IOException {
+        if (compactionSegments < 2) {
+            throw new IllegalArgumentException("Compaction needs at least 2 segments: " + compactionSegments);
+        }
+        this.compactionSegments = compactionSegments;
+        this.log = new SegmentedEmployeeLog(directory, segmentSize, new SegmentedEmployeeLog.Visitor() {
+            @Override
+            public void put(EmployeeRecord record) {
+                index(record);
+            }
+
+            @Override
+            public void delete(int employeeId) {
+                unindex(employeeId);
+            }
+        });
+    }
+
+    @Override
+    public synchronized int count() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized boolean isNew(final Employee employee) {
+        return !index.containsKey(employee.getEmployeeId());
+    }
+
+    @Override
+    public synchronized void create(final Employee employee) {
+        if (employee.getEmployeeId() == 0) {
+            throw new IllegalStateException("Employee has no id yet");
+        }
+        if (index.containsKey(employee.getEmployeeId())) {
+            throw new IllegalStateException("Employee " + employee.getEmployeeId() + " already exists");
+        }
+        put(Collections.singletonList(EmployeeRecord.of(employee)));
+    }
+
+    /**
+     * Appends the employee's current fields; the log keeps whole records,
+     * so the changed fields only decide whether anything is written.
+     * @param employee the employee to update.
+     * @param fields the mask of Employee field bits that changed.
+     */
+    @Override
+    public synchronized void update(final Employee employee, final int fields) {
+        if (!index.containsKey(employee.getEmployeeId())) {
+            throw new IllegalStateException("Employee " + employee.getEmployeeId() + " does not exist");
+        }
+        if (fields != 0) {
+            put(Collections.singletonList(EmployeeRecord.of(employee)));
+        }
+    }
+
+    @Override
+    public synchronized boolean delete(final Employee employee) {
+        final int employeeId = employee.getEmployeeId();
+        if (!index.containsKey(employeeId)) {
+            return false;
+        }
+        try {
+            log.appendDelete(employeeId);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not append to the employee log", e);
+        }
+        unindex(employeeId);
+        compactIfDue();
+        return true;
+    }
+
+    @Override
+    public synchronized Employee findById(final int employeeId) {
+        final EmployeeRecord record = index.get(employeeId);
+        return record == null ? null : record.toEmployee();
+    }
+
+    @Override
+    public synchronized Employee findByEmail(final String email) {
+        final Integer employeeId = idsByEmail.get(EmailIndex.normalize(email));
+        return employeeId == null ? null : findById(employeeId);
+    }
+
+    @Override
+    public synchronized List<String> emails() {
+        final List<String> emails = new ArrayList<String>(index.size());
+        for (EmployeeRecord record : index.values()) {
+            if (record.getEmail() != null) {
+                emails.add(record.getEmail());
+            }
+        }
+        return emails;
+    }
+
+    @Override
+    public synchronized void giveIncrementOf(final int percentage) {
+        final List<EmployeeRecord> incremented = new ArrayList<EmployeeRecord>(index.size());
+        for (EmployeeRecord record : index.values()) {
+            incremented.add(new EmployeeRecord(record.getEmployeeId(), record.getEmail(),
+                    BulkSalaryIncrement.incrementedSalary(record.getSalary(), percentage)));
+        }
+        put(incremented);
+    }
+
+    /**
+     * Creates or updates every employee of a batch with a single append,
+     * then marks clean the employees that did not change meanwhile.
+     * @param employees the employees to save.
+     * @throws IllegalArgumentException if an employee has no id yet,
+     * nothing of the batch is written then.
+     */
+    @Override
+    public synchronized void write(final List<Employee> employees) {
+        final List<EmployeeRecord> records = new ArrayList<EmployeeRecord>(employees.size());
+        for (Employee employee : employees) {
+            if (employee.getEmployeeId() == 0) {
+                throw new IllegalArgumentException("Employee has no id yet");
+            }
+            records.add(EmployeeRecord.of(employee));
+        }
+        put(records);
+        for (int i = 0; i < employees.size(); i++) {
+            final Employee employee = employees.get(i);
+            final EmployeeRecord record = records.get(i);
+            if (record.getSalary() == employee.getSalary() && equal(record.getEmail(), employee.getEmail())) {
+                employee.markClean();
+            }
+        }
+    }
+
+    /**
+     * Replaces the log with a snapshot of the live employees right away.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public synchronized void compact() throws IOException {
+        log.compact(index.values());
+    }
+
+    /**
+     * Writes the live employees to a file an EmployeeService
+     * can map with EmployeeSnapshot.open.
+     * @param path the snapshot file.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public synchronized void exportSnapshot(final Path path) throws IOException {
+        EmployeeSnapshot.write(path, index.values());
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     * @throws IOException if the log cannot be synced.
+     */
+    public synchronized void sync() throws IOException {
+        log.sync();
+    }
+
+    /**
+     * Getter for the logSize.
+     * @return the number of bytes the log takes on disk.
+     * @throws IOException if the size cannot be read.
+     */
+    public synchronized long getLogSize() throws IOException {
+        return log.getSize();
+    }
+
+    /**
+     * Getter for the segmentCount.
+     * @return the number of log segments on disk.
+     */
+    public synchronized int getSegmentCount() {
+        return log.getSegmentCount();
+    }
+
+    /**
+     * Getter for the lastCompactionFailure.
+     * @return why the last automatic compaction failed, null if it succeeded.
+     */
+    public synchronized IOException getLastCompactionFailure() {
+        return lastCompactionFailure;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    /**
+     * Appends a batch of records and applies it to the index.
+     */
+    private void put(final List<EmployeeRecord> records) {
+        try {
+            log.appendPuts(records);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not append to the employee log", e);
+        }
+        for (EmployeeRecord record : records) {
+            index(record);
+        }
+        compactIfDue();
+    }
+
+    /**
+     * Makes a record the latest one of its employee,
+     * moving the employee in the email index if its email changed.
+     */
+    private void index(final EmployeeRecord record) {
+        final EmployeeRecord previous = index.put(record.getEmployeeId(), record);
+        if (previous != null) {
+            unindexEmail(previous);
+        }
+        if (record.getEmail() != null) {
+            idsByEmail.put(EmailIndex.normalize(record.getEmail()), record.getEmployeeId());
+        }
+    }
+
+    private void unindex(final int employeeId) {
+        final EmployeeRecord previous = index.remove(employeeId);
+        if (previous != null) {
+            unindexEmail(previous);
+        }
+    }
+
+    /**
+     * Drops the email of a record from the email index,
+     * unless another employee took the email over since.
+     */
+    private void unindexEmail(final EmployeeRecord record) {
+        if (record.getEmail() == null) {
+            return;
+        }
+        final String key = EmailIndex.normalize(record.getEmail());
+        if (Integer.valueOf(record.getEmployeeId()).equals(idsByEmail.get(key))) {
+            idsByEmail.remove(key);
+        }
+    }
+
+    private static boolean equal(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Compacts the log once it has enough segments.
+     * The write that triggered it already succeeded, so a failure is only
+     * recorded and the compaction retried after the next write.
+     */
+    private void compactIfDue() {
+        if (log.getSegmentCount() < compactionSegments) {
+            return;
+        }
+        try {
+            log.compact(index.values());
+            lastCompactionFailure = null;
+        } catch (IOException e) {
+            lastCompactionFailure = e;
+        }
+    }
+}
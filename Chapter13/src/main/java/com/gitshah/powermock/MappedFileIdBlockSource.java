@@ -0,0 +1,116 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The IdBlockSource that persists its high-water mark
+ * in a small memory-mapped file.
+ * The file is only forced to disk when a new block is reserved,
+ * so handing out ids from within a block never touches the disk.
+ * After a restart the unused tail of the last reserved block is
+ * skipped, which guarantees ids are never handed out twice.
+ * A file left all zeros by a crash while it was being created,
+ * before its header reached the disk, is taken for a new one.
+ */
+public class MappedFileIdBlockSource implements IdBlockSource, Closeable {
+
+    /**
+     * Marks a file as written by this class.
+     */
+    private static final int MAGIC = 0x45494447;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int HIGH_WATER_MARK_OFFSET = 8;
+    private static final int FILE_SIZE = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The first id of the next block to reserve.
+     */
+    private long highWaterMark;
+
+    /**
+     * The constructor that opens the file, ids start at 1 if it is new.
+     * @param file the file that holds the high-water mark.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public MappedFileIdBlockSource(final Path file) throws IOException {
+        this(file, 1);
+    }
+
+    /**
+     * The constructor that opens the file or creates it
+     * with the given first id.
+     * @param file the file that holds the high-water mark.
+     * @param firstId the first id to hand out when the file is new.
+     * @throws IOException if the file cannot be opened, mapped
+     * or was not written by this class.
+     */
+    public MappedFileIdBlockSource(final Path file, final long firstId) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final long size = channel.size();
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (size == 0 || size <= FILE_SIZE && isAllZeros()) {
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                buffer.putLong(HIGH_WATER_MARK_OFFSET, firstId);
+                buffer.force();
+            } else if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("Not an employee id high-water mark file: " + file);
+            }
+            this.highWaterMark = buffer.getLong(HIGH_WATER_MARK_OFFSET);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private boolean isAllZeros() {
+        for (int i = 0; i < FILE_SIZE; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reserves the next block and forces the new
+     * high-water mark to disk before handing it out.
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long reserveBlock(final int blockSize) {
+        final long first = highWaterMark;
+        highWaterMark = first + blockSize;
+        buffer.putLong(HIGH_WATER_MARK_OFFSET, highWaterMark);
+        buffer.force();
+        return first;
+    }
+
+    /**
+     * Getter for the highWaterMark.
+     * @return the first id of the next block to reserve.
+     */
+    public synchronized long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Forces the high-water mark to disk and closes the file.
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.gitshah.powermock;
+
+/**
+ * A flyweight Employee over a record of an OffHeapEmployeeStore.
+ * The getters and setters read and write the record in place,
+ * and moveTo repositions the same instance on another record,
+ * so one view can walk the whole store without allocating.
+ * Only getEmail allocates, to decode the email.
+ * The view carries no state of its own: it does not track dirty
+ * fields or notify salary listeners, and is not meant to be persisted.
+ */
+public class OffHeapEmployee extends Employee {
+
+    private final OffHeapEmployeeStore store;
+    private int row;
+
+    /**
+     * The constructor that positions the view on the first record.
+     * @param store the store to view.
+     */
+    OffHeapEmployee(final OffHeapEmployeeStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Repositions the view on another record.
+     * @param row the row of the record.
+     * @return this view.
+     */
+    public OffHeapEmployee moveTo(final int row) {
+        this.row = row;
+        return this;
+    }
+
+    /**
+     * Getter for the row.
+     * @return the row of the record this view is on.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public int getEmployeeId() {
+        return store.getEmployeeId(row);
+    }
+
+    @Override
+    public void setEmployeeId(final int employeeId) {
+        store.setEmployeeId(row, employeeId);
+    }
+
+    @Override
+    public String getEmail() {
+        return store.getEmail(row);
+    }
+
+    @Override
+    public void setEmail(final String email) {
+        store.setEmail(row, email);
+    }
+
+    @Override
+    public long getSalary() {
+        return store.getSalary(row);
+    }
+
+    @Override
+    public void setSalary(final long salary) {
+        store.setSalary(row, salary);
+    }
+}
@@ -0,0 +1,218 @@
+package com.gitshah.powermock;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores employees outside the Java heap, so holding millions
+ * of them does not lengthen garbage collection pauses.
+ * Every employee is a fixed-width 16 byte record in a direct buffer:
+ * the id, the code of its email in an EmailDictionary and the salary.
+ * Records are packed into chunks of a fixed number of records,
+ * so the store grows without copying and past 2GB.
+ * OffHeapEmployee reads and writes the fields of a record in place,
+ * so scanning the whole store through one view allocates nothing.
+ * Not thread safe: callers must keep a write from running
+ * alongside any other access, the email dictionary included.
+ */
+public class OffHeapEmployeeStore {
+
+    /**
+     * The size of one record in bytes.
+     */
+    public static final int RECORD_BYTES = 16;
+
+    /**
+     * The default number of records per chunk, 16MB worth.
+     */
+    public static final int DEFAULT_CHUNK_RECORDS = 1 << 20;
+
+    private static final int ID_OFFSET = 0;
+    private static final int EMAIL_OFFSET = 4;
+    private static final int SALARY_OFFSET = 8;
+    private static final int NO_EMAIL = -1;
+
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    private final EmailDictionary emails = new EmailDictionary();
+    private final int chunkShift;
+    private final int chunkMask;
+    private int size;
+
+    /**
+     * The default constructor,
+     * chunks hold DEFAULT_CHUNK_RECORDS records.
+     */
+    public OffHeapEmployeeStore() {
+        this(DEFAULT_CHUNK_RECORDS);
+    }
+
+    /**
+     * The constructor that sizes the chunks.
+     * @param chunkRecords the number of records per chunk, a power of two
+     *                     of at most Integer.MAX_VALUE / RECORD_BYTES.
+     */
+    public OffHeapEmployeeStore(final int chunkRecords) {
+        if (chunkRecords <= 0 || Integer.bitCount(chunkRecords) != 1) {
+            throw new IllegalArgumentException("Chunk records must be a power of two: " + chunkRecords);
+        }
+        if (chunkRecords > Integer.MAX_VALUE / RECORD_BYTES) {
+            throw new IllegalArgumentException("A chunk of " + chunkRecords + " records does not fit in one buffer");
+        }
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkRecords);
+        this.chunkMask = chunkRecords - 1;
+    }
+
+    /**
+     * Appends a copy of an employee.
+     * @param employee the employee to store.
+     * @return the row of the stored record.
+     */
+    public int add(final Employee employee) {
+        return add(employee.getEmployeeId(), employee.getEmail(), employee.getSalary());
+    }
+
+    /**
+     * Appends an employee record.
+     * @param employeeId the employee id.
+     * @param email the employee email, may be null.
+     * @param salary the salary.
+     * @return the row of the stored record.
+     * @throws IllegalStateException if the store already holds Integer.MAX_VALUE records.
+     */
+    public int add(final int employeeId, final String email, final long salary) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("The store is full: " + size + " records");
+        }
+        final int row = size;
+        if ((row >>> chunkShift) == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect((chunkMask + 1) * RECORD_BYTES));
+        }
+        size++;
+        setEmployeeId(row, employeeId);
+        setEmail(row, email);
+        setSalary(row, salary);
+        return row;
+    }
+
+    /**
+     * Getter for the size.
+     * @return the number of records.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads the id of a record.
+     * @param row the row of the record.
+     * @return the employee id.
+     */
+    public int getEmployeeId(final int row) {
+        return chunkOf(row).getInt(offsetOf(row) + ID_OFFSET);
+    }
+
+    /**
+     * Writes the id of a record.
+     * @param row the row of the record.
+     * @param employeeId the employee id.
+     */
+    public void setEmployeeId(final int row, final int employeeId) {
+        chunkOf(row).putInt(offsetOf(row) + ID_OFFSET, employeeId);
+    }
+
+    /**
+     * Reads the email code of a record, comparing codes
+     * tells whether two records share an email without decoding it.
+     * @param row the row of the record.
+     * @return the code of the email in the dictionary, -1 for no email.
+     */
+    public int getEmailCode(final int row) {
+        return chunkOf(row).getInt(offsetOf(row) + EMAIL_OFFSET);
+    }
+
+    /**
+     * Decodes the email of a record.
+     * @param row the row of the record.
+     * @return the employee email, null if it has none.
+     */
+    public String getEmail(final int row) {
+        final int code = getEmailCode(row);
+        return code == NO_EMAIL ? null : emails.get(code);
+    }
+
+    /**
+     * Writes the email of a record, interning it in the dictionary.
+     * @param row the row of the record.
+     * @param email the employee email, may be null.
+     */
+    public void setEmail(final int row, final String email) {
+        chunkOf(row).putInt(offsetOf(row) + EMAIL_OFFSET, email == null ? NO_EMAIL : emails.intern(email));
+    }
+
+    /**
+     * Reads the salary of a record.
+     * @param row the row of the record.
+     * @return the salary.
+     */
+    public long getSalary(final int row) {
+        return chunkOf(row).getLong(offsetOf(row) + SALARY_OFFSET);
+    }
+
+    /**
+     * Writes the salary of a record.
+     * @param row the row of the record.
+     * @param salary the salary.
+     */
+    public void setSalary(final int row, final long salary) {
+        chunkOf(row).putLong(offsetOf(row) + SALARY_OFFSET, salary);
+    }
+
+    /**
+     * Sums the salaries of all records without allocating.
+     * @return the total salary.
+     */
+    public long sumSalaries() {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            total += getSalary(row);
+        }
+        return total;
+    }
+
+    /**
+     * Creates a flyweight positioned on the first record,
+     * move it with OffHeapEmployee.moveTo to read the others.
+     * @return a view on this store.
+     */
+    public OffHeapEmployee view() {
+        return new OffHeapEmployee(this);
+    }
+
+    /**
+     * Getter for the emailDictionary.
+     * @return the dictionary the emails of the records are interned in.
+     */
+    public EmailDictionary getEmailDictionary() {
+        return emails;
+    }
+
+    /**
+     * Getter for the offHeapBytes.
+     * @return the direct memory the records and emails take.
+     */
+    public long getOffHeapBytes() {
+        return (long) chunks.size() * (chunkMask + 1) * RECORD_BYTES + emails.getOffHeapBytes();
+    }
+
+    private ByteBuffer chunkOf(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return chunks.get(row >>> chunkShift);
+    }
+
+    private int offsetOf(final int row) {
+        return (row & chunkMask) * RECORD_BYTES;
+    }
+}
@@ -0,0 +1,16 @@
+package com.gitshah.powermock;
+
+/**
+ * Notified whenever the salary of an employee changes,
+ * so that aggregates kept over salaries can be updated in place.
+ */
+public interface SalaryChangeListener {
+
+    /**
+     * Called after the salary of the employee changed.
+     * @param employee the employee whose salary changed.
+     * @param oldSalary the salary before the change.
+     * @param newSalary the salary after the change.
+     */
+    void salaryChanged(Employee employee, long oldSalary, long newSalary);
+}
@@ -0,0 +1,15 @@
+package com.gitshah.powermock;
+
+/**
+ * Notified as a BulkSalaryIncrement works through its employees.
+ * Called from the worker threads, once per finished chunk.
+ */
+public interface SalaryIncrementProgressListener {
+
+    /**
+     * Reports the progress of the increment.
+     * @param processed the number of employees processed so far, failed ones included.
+     * @param total the number of employees to process.
+     */
+    void progressed(int processed, int total);
+}
@@ -0,0 +1,94 @@
+package com.gitshah.powermock;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A sorted multiset of salaries.
+ * Adding or removing a salary costs O(log n) in the number of
+ * distinct salaries, and the lowest and highest salary are
+ * available without scanning all employees.
+ */
+public class SalaryMultiset {
+
+    /**
+     * Every distinct salary mapped to the number of employees earning it.
+     */
+    private final TreeMap<Long, Integer> counts = new TreeMap<Long, Integer>();
+
+    private int size;
+
+    /**
+     * Adds one occurrence of a salary.
+     * @param salary the salary to add.
+     */
+    public void add(final long salary) {
+        final Integer count = counts.get(salary);
+        counts.put(salary, count == null ? 1 : count + 1);
+        size++;
+    }
+
+    /**
+     * Removes one occurrence of a salary.
+     * @param salary the salary to remove.
+     * @return true if the salary was present, false otherwise.
+     */
+    public boolean remove(final long salary) {
+        final Integer count = counts.get(salary);
+        if (count == null) {
+            return false;
+        }
+        if (count == 1) {
+            counts.remove(salary);
+        } else {
+            counts.put(salary, count - 1);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Getter for the max salary.
+     * @return the highest salary, 0 when empty.
+     */
+    public long max() {
+        final Map.Entry<Long, Integer> last = counts.lastEntry();
+        return last == null ? 0 : last.getKey();
+    }
+
+    /**
+     * Getter for the min salary.
+     * @return the lowest salary, 0 when empty.
+     */
+    public long min() {
+        final Map.Entry<Long, Integer> first = counts.firstEntry();
+        return first == null ? 0 : first.getKey();
+    }
+
+    /**
+     * Getter for the size.
+     * @return the number of salaries held, counting duplicates.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every salary.
+     */
+    public void clear() {
+        counts.clear();
+        size = 0;
+    }
+
+    /**
+     * Copies this multiset.
+     * @return an independent multiset holding the same salaries.
+     */
+    SalaryMultiset copy() {
+        final SalaryMultiset copy = new SalaryMultiset();
+        copy.counts.putAll(counts);
+        copy.size = size;
+        return copy;
+    }
+}
@@ -0,0 +1,144 @@
+package com.gitshah.powermock;
+
+/**
+ * The salary statistics of a Department, maintained as employees
+ * join, leave or have their salary changed.
+ * Count, total and mean are O(1), min and max O(log n) and
+ * percentiles are estimated from a SalaryHistogram,
+ * so no query has to visit the employees.
+ */
+public class SalaryStatistics {
+
+    private final SalaryMultiset salaries;
+    private final SalaryHistogram histogram;
+    private long total;
+
+    /**
+     * The constructor for statistics of no salaries.
+     */
+    public SalaryStatistics() {
+        this(new SalaryMultiset(), new SalaryHistogram(), 0);
+    }
+
+    private SalaryStatistics(final SalaryMultiset salaries, final SalaryHistogram histogram, final long total) {
+        this.salaries = salaries;
+        this.histogram = histogram;
+        this.total = total;
+    }
+
+    /**
+     * Records the salary of an employee.
+     * @param salary the salary to record.
+     */
+    void add(final long salary) {
+        salaries.add(salary);
+        histogram.add(salary);
+        total += salary;
+    }
+
+    /**
+     * Forgets the salary of an employee.
+     * @param salary the salary to forget.
+     */
+    void remove(final long salary) {
+        if (salaries.remove(salary)) {
+            histogram.remove(salary);
+            total -= salary;
+        }
+    }
+
+    /**
+     * Forgets every salary.
+     */
+    void clear() {
+        salaries.clear();
+        histogram.clear();
+        total = 0;
+    }
+
+    /**
+     * Copies these statistics.
+     * @return independent statistics of the same salaries.
+     */
+    SalaryStatistics copy() {
+        return new SalaryStatistics(salaries.copy(), histogram.copy(), total);
+    }
+
+    /**
+     * Getter for the count.
+     * @return the number of salaries.
+     */
+    public int getCount() {
+        return salaries.size();
+    }
+
+    /**
+     * Getter for the total.
+     * @return the sum of all salaries.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Getter for the min.
+     * @return the lowest salary, 0 when empty.
+     */
+    public long getMin() {
+        return salaries.min();
+    }
+
+    /**
+     * Getter for the max.
+     * @return the highest salary, 0 when empty.
+     */
+    public long getMax() {
+        return salaries.max();
+    }
+
+    /**
+     * Getter for the mean.
+     * @return the average salary, 0 when empty.
+     */
+    public double getMean() {
+        final int count = salaries.size();
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Estimates the salary at the given percentile,
+     * clamped to the exact min and max.
+     * The 0th and 100th percentiles are the exact min and max.
+     * @param percentile the percentile between 0 and 100.
+     * @return the estimated salary, 0 when empty.
+     */
+    public long getPercentile(final double percentile) {
+        if (salaries.size() == 0) {
+            return 0;
+        }
+        if (percentile == 0) {
+            return salaries.min();
+        }
+        if (percentile == 100) {
+            return salaries.max();
+        }
+        final long estimate = histogram.percentile(percentile);
+        return Math.min(Math.max(estimate, salaries.min()), salaries.max());
+    }
+
+    /**
+     * Getter for the median.
+     * @return the estimated 50th percentile salary.
+     */
+    public long getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Getter for the 90th percentile.
+     * @return the estimated 90th percentile salary.
+     */
+    public long getP90() {
+        return getPercentile(90);
+    }
+}
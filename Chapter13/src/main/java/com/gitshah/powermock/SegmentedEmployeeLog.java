@@ -0,0 +1,512 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of employee records split into segment files
+ * of a fixed maximum size, with snapshots that replace old segments.
+ * Every record is its payload length, a CRC32 of the payload and the
+ * payload: a PUT of a whole EmployeeRecord or a DELETE of an id.
+ * A batch of several records is preceded by a BATCH record holding
+ * their count, and is replayed all or nothing.
+ * A batch is never split across segments, so a batch larger than
+ * a segment gets a segment of its own that is larger than the rest.
+ * Compacting seals the active segment and writes a snapshot of the live
+ * records, which makes every segment before it and every superseded
+ * version of an employee in them redundant, so they are deleted.
+ * Opening the log deletes a snapshot left half written by a crash,
+ * then replays the latest snapshot and the segments after it;
+ * a torn or corrupt record or batch at the end of the last segment is cut off,
+ * anywhere else it fails the open.
+ */
+public class SegmentedEmployeeLog implements Closeable {
+
+    /**
+     * Receives the records of the log when it is replayed.
+     */
+    public interface Visitor {
+
+        /**
+         * Called for every stored version of an employee, oldest first.
+         * @param record the stored employee.
+         */
+        void put(EmployeeRecord record);
+
+        /**
+         * Called for every deleted employee.
+         * @param employeeId the id of the deleted employee.
+         */
+        void delete(int employeeId);
+    }
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMPORARY_SNAPSHOT_SUFFIX = SNAPSHOT_SUFFIX + ".tmp";
+    private static final int SNAPSHOT_MAGIC = 0x45534E50;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte BATCH = 3;
+
+    /**
+     * The length and CRC32 in front of every record payload.
+     */
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The numbers of the sealed segments still on disk, oldest first.
+     */
+    private final List<Long> sealedSegments = new ArrayList<Long>();
+
+    private long activeSegment;
+    private FileChannel active;
+    private long activeSize;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    /**
+     * The constructor that opens the log in a directory,
+     * creating it if needed, and replays it.
+     * @param directory the directory holding the segments and snapshots.
+     * @param segmentSize the size a segment is sealed at.
+     * @param visitor receives the snapshot records and then every record after them.
+     * @throws IOException if the log cannot be read or is corrupt.
+     */
+    public SegmentedEmployeeLog(final Path directory, final int segmentSize, final Visitor visitor) throws IOException {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("Segment size must be at least 64 bytes: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        //A snapshot still being written when the process crashed never replaced anything.
+        for (long temporary : numbered(TEMPORARY_SNAPSHOT_SUFFIX)) {
+            Files.delete(directory.resolve(name(temporary, TEMPORARY_SNAPSHOT_SUFFIX)));
+        }
+        final List<Long> snapshots = numbered(SNAPSHOT_SUFFIX);
+        final long snapshot = snapshots.isEmpty() ? -1 : snapshots.get(snapshots.size() - 1);
+        if (snapshot >= 0) {
+            readSnapshot(snapshotPath(snapshot), visitor);
+        }
+
+        //Files older than the latest snapshot are left over from an interrupted compaction.
+        for (long older : snapshots) {
+            if (older < snapshot) {
+                Files.delete(snapshotPath(older));
+            }
+        }
+        final List<Long> segments = new ArrayList<Long>();
+        for (long segment : numbered(SEGMENT_SUFFIX)) {
+            if (segment < snapshot) {
+                Files.delete(segmentPath(segment));
+            } else {
+                segments.add(segment);
+            }
+        }
+
+        for (int i = 0; i < segments.size(); i++) {
+            replaySegment(segments.get(i), i == segments.size() - 1, visitor);
+        }
+        if (segments.isEmpty()) {
+            segments.add(Math.max(snapshot, 0));
+        }
+        sealedSegments.addAll(segments.subList(0, segments.size() - 1));
+        openActive(segments.get(segments.size() - 1));
+    }
+
+    /**
+     * Appends the records of stored employees as one batch.
+     * @param records the employees to store.
+     * @throws IOException if the records cannot be written.
+     */
+    public void appendPuts(final Collection<EmployeeRecord> records) throws IOException {
+        scratch.clear();
+        if (records.size() > 1) {
+            ensureCapacity(HEADER_BYTES + 5);
+            final int start = scratch.position();
+            scratch.position(start + HEADER_BYTES);
+            scratch.put(BATCH);
+            scratch.putInt(records.size());
+            finishRecord(start);
+        }
+        for (EmployeeRecord record : records) {
+            encodePut(record);
+        }
+        append();
+    }
+
+    /**
+     * Appends the deletion of an employee.
+     * @param employeeId the id of the deleted employee.
+     * @throws IOException if the record cannot be written.
+     */
+    public void appendDelete(final int employeeId) throws IOException {
+        scratch.clear();
+        ensureCapacity(HEADER_BYTES + 5);
+        final int start = scratch.position();
+        scratch.position(start + HEADER_BYTES);
+        scratch.put(DELETE);
+        scratch.putInt(employeeId);
+        finishRecord(start);
+        append();
+    }
+
+    /**
+     * Seals the active segment and replaces it and every
+     * segment before it with a snapshot of the live records.
+     * @param live every live employee, as of the last append.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void compact(final Collection<EmployeeRecord> live) throws IOException {
+        roll();
+        final long snapshot = activeSegment;
+        final Path temporary = directory.resolve(name(snapshot, TEMPORARY_SNAPSHOT_SUFFIX));
+        final FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(SNAPSHOT_MAGIC).putInt(live.size()).flip();
+            writeFully(channel, header, 0);
+            long position = header.capacity();
+            scratch.clear();
+            for (EmployeeRecord record : live) {
+                encodePut(record);
+                if (scratch.position() >= segmentSize) {
+                    scratch.flip();
+                    position += writeFully(channel, scratch, position);
+                    scratch.clear();
+                }
+            }
+            scratch.flip();
+            writeFully(channel, scratch, position);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        Files.move(temporary, snapshotPath(snapshot), StandardCopyOption.ATOMIC_MOVE);
+        //The snapshot must survive a crash before the files it replaces are deleted.
+        syncDirectory();
+
+        for (long segment : sealedSegments) {
+            Files.delete(segmentPath(segment));
+        }
+        sealedSegments.clear();
+        for (long older : numbered(SNAPSHOT_SUFFIX)) {
+            if (older < snapshot) {
+                Files.delete(snapshotPath(older));
+            }
+        }
+    }
+
+    /**
+     * Getter for the segmentCount.
+     * @return the number of segments on disk, the active one included.
+     */
+    public int getSegmentCount() {
+        return sealedSegments.size() + 1;
+    }
+
+    /**
+     * Getter for the size.
+     * @return the number of bytes the segments and the snapshot take on disk.
+     * @throws IOException if a file size cannot be read.
+     */
+    public long getSize() throws IOException {
+        long size = activeSize;
+        for (long segment : sealedSegments) {
+            size += Files.size(segmentPath(segment));
+        }
+        for (long snapshot : numbered(SNAPSHOT_SUFFIX)) {
+            size += Files.size(snapshotPath(snapshot));
+        }
+        return size;
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     * @throws IOException if the active segment cannot be synced.
+     */
+    public void sync() throws IOException {
+        active.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        active.close();
+    }
+
+    private void append() throws IOException {
+        scratch.flip();
+        if (activeSize > 0 && activeSize + scratch.remaining() > segmentSize) {
+            roll();
+        }
+        try {
+            activeSize += writeFully(active, scratch, activeSize);
+        } catch (IOException e) {
+            //Cut off whatever part of the batch made it, so the next append does not follow it.
+            try {
+                active.truncate(activeSize);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Seals the active segment and starts the next one.
+     */
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+        sealedSegments.add(activeSegment);
+        openActive(activeSegment + 1);
+    }
+
+    private void openActive(final long segment) throws IOException {
+        final Path path = segmentPath(segment);
+        final boolean created = Files.notExists(path);
+        activeSegment = segment;
+        active = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSize = active.size();
+        if (created) {
+            syncDirectory();
+        }
+    }
+
+    /**
+     * Forces the directory entries, of a new segment or a renamed snapshot, to disk.
+     * Some platforms, Windows among them, cannot open a directory,
+     * there the entries are as durable as the platform makes them.
+     */
+    private void syncDirectory() throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void encodePut(final EmployeeRecord record) {
+        final byte[] email = record.getEmail() == null ? null : record.getEmail().getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(HEADER_BYTES + 17 + (email == null ? 0 : email.length));
+        final int start = scratch.position();
+        scratch.position(start + HEADER_BYTES);
+        scratch.put(PUT);
+        scratch.putInt(record.getEmployeeId());
+        scratch.putLong(record.getSalary());
+        if (email == null) {
+            scratch.putInt(-1);
+        } else {
+            scratch.putInt(email.length);
+            scratch.put(email);
+        }
+        finishRecord(start);
+    }
+
+    /**
+     * Fills in the length and CRC32 of the record whose header starts at start.
+     */
+    private void finishRecord(final int start) {
+        final int payloadLength = scratch.position() - start - HEADER_BYTES;
+        crc.reset();
+        crc.update(scratch.array(), start + HEADER_BYTES, payloadLength);
+        scratch.putInt(start, payloadLength);
+        scratch.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void ensureCapacity(final int recordBytes) {
+        if (scratch.remaining() < recordBytes) {
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + recordBytes));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    private void readSnapshot(final Path path, final Visitor visitor) throws IOException {
+        final ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (snapshot.remaining() < 8 || snapshot.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not an employee snapshot: " + path);
+        }
+        final int count = snapshot.getInt();
+        for (int i = 0; i < count; i++) {
+            if (!readRecord(snapshot, visitor)) {
+                throw new IOException("Corrupt record " + i + " in snapshot " + path);
+            }
+        }
+    }
+
+    private void replaySegment(final long segment, final boolean last, final Visitor visitor) throws IOException {
+        final Path path = segmentPath(segment);
+        final ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(path));
+        while (records.hasRemaining()) {
+            final int start = records.position();
+            if (readBatch(records, visitor)) {
+                continue;
+            }
+            if (!last) {
+                throw new IOException("Corrupt record in sealed segment " + path + " at offset " + start);
+            }
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            try {
+                channel.truncate(start);
+            } finally {
+                channel.close();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Reads the batch, or the single record, at the buffer's position
+     * and hands its records to the visitor once all of them were read.
+     * @return true if a whole, intact batch was read,
+     * false with the position left on the batch otherwise.
+     */
+    private boolean readBatch(final ByteBuffer records, final Visitor visitor) {
+        final int start = records.position();
+        if (records.remaining() < HEADER_BYTES + 5 || records.getInt(start) != 5
+                || records.get(start + HEADER_BYTES) != BATCH) {
+            return readRecord(records, visitor);
+        }
+        crc.reset();
+        crc.update(records.array(), start + HEADER_BYTES, 5);
+        if ((int) crc.getValue() != records.getInt(start + 4)) {
+            return false;
+        }
+        final int count = records.getInt(start + HEADER_BYTES + 1);
+        records.position(start + HEADER_BYTES + 5);
+        //Stored records and the Integer ids of deleted employees, in log order.
+        final List<Object> batch = new ArrayList<Object>();
+        final Visitor collector = new Visitor() {
+            @Override
+            public void put(EmployeeRecord record) {
+                batch.add(record);
+            }
+
+            @Override
+            public void delete(int employeeId) {
+                batch.add(Integer.valueOf(employeeId));
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            if (!readRecord(records, collector)) {
+                records.position(start);
+                return false;
+            }
+        }
+        for (Object record : batch) {
+            if (record instanceof EmployeeRecord) {
+                visitor.put((EmployeeRecord) record);
+            } else {
+                visitor.delete((Integer) record);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the record at the buffer's position and hands it to the visitor.
+     * @return true if a whole, intact record was read,
+     * false with the position left on the record otherwise.
+     */
+    private boolean readRecord(final ByteBuffer records, final Visitor visitor) {
+        final int start = records.position();
+        if (records.remaining() < HEADER_BYTES) {
+            return false;
+        }
+        final int payloadLength = records.getInt();
+        final int checksum = records.getInt();
+        if (payloadLength < 5 || payloadLength > records.remaining()) {
+            records.position(start);
+            return false;
+        }
+        crc.reset();
+        crc.update(records.array(), records.position(), payloadLength);
+        if ((int) crc.getValue() != checksum) {
+            records.position(start);
+            return false;
+        }
+        final byte type = records.get();
+        final int employeeId = records.getInt();
+        if (type == PUT) {
+            final long salary = records.getLong();
+            final int emailLength = records.getInt();
+            String email = null;
+            if (emailLength >= 0) {
+                email = new String(records.array(), records.position(), emailLength, StandardCharsets.UTF_8);
+                records.position(records.position() + emailLength);
+            }
+            visitor.put(new EmployeeRecord(employeeId, email, salary));
+        } else if (type == DELETE) {
+            visitor.delete(employeeId);
+        } else {
+            records.position(start);
+            return false;
+        }
+        return true;
+    }
+
+    private static long writeFully(final FileChannel channel, final ByteBuffer bytes, final long position) throws IOException {
+        long written = 0;
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Lists the numbers of the files with a suffix, lowest first.
+     */
+    private List<Long> numbered(final String suffix) throws IOException {
+        final List<Long> numbers = new ArrayList<Long>();
+        final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix);
+        try {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(0, name.length() - suffix.length())));
+            }
+        } finally {
+            files.close();
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path segmentPath(final long segment) {
+        return directory.resolve(name(segment, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(final long snapshot) {
+        return directory.resolve(name(snapshot, SNAPSHOT_SUFFIX));
+    }
+
+    private static String name(final long number, final String suffix) {
+        return String.format("%016d%s", number, suffix);
+    }
+}
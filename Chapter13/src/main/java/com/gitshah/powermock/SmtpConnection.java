@@ -0,0 +1,236 @@
+package com.gitshah.powermock;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single connection to an SMTP server.
+ * The connection stays open between messages so it can be
+ * pooled by the SmtpConnectionPool. When the server advertises
+ * the PIPELINING extension (RFC 2920) in its EHLO reply the envelope
+ * commands of each message are written in one go, otherwise each
+ * command waits for the reply to the previous one.
+ */
+public class SmtpConnection implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final Writer writer;
+
+    /**
+     * Whether the server allows the envelope commands to be pipelined.
+     */
+    private final boolean pipelining;
+
+    /**
+     * The time this connection was last handed back to the pool.
+     */
+    private long lastUsedMillis = System.currentTimeMillis();
+
+    /**
+     * The constructor that connects to the SMTP server
+     * and greets it with EHLO, falling back to HELO
+     * for servers that do not know EHLO.
+     * @param host the SMTP server host.
+     * @param port the SMTP server port.
+     * @throws IOException if the server cannot be reached or refuses the connection.
+     */
+    public SmtpConnection(final String host, final int port) throws IOException {
+        this.socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+            expect(220);
+            command("EHLO localhost");
+            final List<String> reply = readReply();
+            if (reply.get(reply.size() - 1).startsWith("250")) {
+                this.pipelining = advertises(reply, "PIPELINING");
+            } else {
+                command("HELO localhost");
+                expect(250);
+                this.pipelining = false;
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends one email over this connection.
+     * @param from the sender address.
+     * @param to the recipient address.
+     * @param message the message body.
+     * @throws IllegalArgumentException if an address is missing or contains a line break,
+     * nothing is sent then.
+     * @throws IOException if the server rejects the email or the connection breaks.
+     */
+    public void send(final String from, final String to, final String message) throws IOException {
+        checkAddress(from);
+        checkAddress(to);
+        if (pipelining) {
+            writer.write("MAIL FROM:<" + from + ">\r\n");
+            writer.write("RCPT TO:<" + to + ">\r\n");
+            writer.write("DATA\r\n");
+            writer.flush();
+            expect(250);
+            expect(250);
+            expect(354);
+        } else {
+            command("MAIL FROM:<" + from + ">");
+            expect(250);
+            command("RCPT TO:<" + to + ">");
+            expect(250);
+            command("DATA");
+            expect(354);
+        }
+
+        writer.write("From: " + from + "\r\n");
+        writer.write("To: " + to + "\r\n");
+        writer.write("Subject: Welcome\r\n\r\n");
+        for (String line : message.split("\r\n|\r|\n", -1)) {
+            if (line.startsWith(".")) {
+                writer.write('.');
+            }
+            writer.write(line);
+            writer.write("\r\n");
+        }
+        command(".");
+        expect(250);
+    }
+
+    /**
+     * Getter for the pipelining.
+     * @return true if the server allows the envelope commands to be pipelined.
+     */
+    public boolean isPipelining() {
+        return pipelining;
+    }
+
+    /**
+     * Checks that the server still answers on this connection.
+     * @return true if the server replied to a NOOP, false otherwise.
+     */
+    public boolean isHealthy() {
+        if (socket.isClosed()) {
+            return false;
+        }
+        try {
+            command("NOOP");
+            expect(250);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Getter for the lastUsedMillis.
+     * @return the time this connection was last handed back to the pool.
+     */
+    public long getLastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    /**
+     * Marks this connection as just used.
+     */
+    void touch() {
+        lastUsedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Says goodbye to the server and closes the socket.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!socket.isClosed()) {
+                command("QUIT");
+            }
+        } catch (IOException e) {
+            //The connection is going away anyway.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //Nothing more we can do.
+            }
+        }
+    }
+
+    private void command(final String line) throws IOException {
+        writer.write(line);
+        writer.write("\r\n");
+        writer.flush();
+    }
+
+    /**
+     * Reads a (possibly multi-line) reply and checks its code.
+     * @param code the expected reply code.
+     * @throws IOException if the reply has a different code or the connection breaks.
+     */
+    private void expect(final int code) throws IOException {
+        final List<String> reply = readReply();
+        final String line = reply.get(reply.size() - 1);
+        if (!line.startsWith(Integer.toString(code))) {
+            throw new IOException("Expected SMTP reply " + code + " but got: " + line);
+        }
+    }
+
+    /**
+     * Reads a (possibly multi-line) reply.
+     * @return the lines of the reply, the last one without a '-' after the code.
+     * @throws IOException if the connection breaks.
+     */
+    private List<String> readReply() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                throw new IOException("SMTP server closed the connection");
+            }
+            lines.add(line);
+        } while (line.length() > 3 && line.charAt(3) == '-');
+        return lines;
+    }
+
+    /**
+     * Checks whether an EHLO reply lists an extension.
+     * Every line but the first greeting names one extension, followed by its parameters.
+     */
+    private static boolean advertises(final List<String> ehloReply, final String extension) {
+        for (int i = 1; i < ehloReply.size(); i++) {
+            final String keyword = ehloReply.get(i).length() > 4 ? ehloReply.get(i).substring(4).trim() : "";
+            if (keyword.split(" ")[0].equalsIgnoreCase(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Refuses addresses that would let a line break inject SMTP commands or headers.
+     */
+    private static void checkAddress(final String address) {
+        if (address == null || address.indexOf('\r') >= 0 || address.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Invalid email address: " + address);
+        }
+    }
+}
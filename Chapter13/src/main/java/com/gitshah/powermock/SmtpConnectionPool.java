@@ -0,0 +1,206 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of SmtpConnection instances.
+ * At most maxSize connections are open at any time,
+ * connections idle for longer than the idle timeout are evicted
+ * and every connection is health checked before it is handed out.
+ */
+public class SmtpConnectionPool implements Closeable {
+
+    private final String host;
+    private final int port;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+
+    /**
+     * One permit per connection that may still be handed out.
+     */
+    private final Semaphore permits;
+
+    /**
+     * The idle connections, most recently used first.
+     */
+    private final Deque<SmtpConnection> idle = new ArrayDeque<SmtpConnection>();
+
+    private int createdCount;
+    private boolean closed;
+
+    /**
+     * The constructor that configures the pool.
+     * No connection is opened until the first borrow.
+     * @param host the SMTP server host.
+     * @param port the SMTP server port.
+     * @param maxSize the maximum number of open connections.
+     * @param idleTimeoutMillis how long a connection may stay idle before it is evicted.
+     * @param borrowTimeoutMillis how long borrow waits for a free connection.
+     */
+    public SmtpConnectionPool(final String host, final int port, final int maxSize,
+                              final long idleTimeoutMillis, final long borrowTimeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Hands out a healthy connection, reusing an idle one when possible.
+     * Every borrowed connection has to be given back
+     * through release or invalidate.
+     * @return a connection to the SMTP server.
+     * @throws IOException if no connection became free in time
+     * or a new one could not be opened.
+     * @throws IllegalStateException if the pool was closed.
+     */
+    public SmtpConnection borrow() throws IOException {
+        checkOpen();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for one of " + maxSize + " SMTP connections");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an SMTP connection", e);
+        }
+
+        try {
+            checkOpen();
+            SmtpConnection connection;
+            while ((connection = pollIdle()) != null) {
+                if (connection.isHealthy()) {
+                    return connection;
+                }
+                connection.close();
+            }
+            connection = new SmtpConnection(host, port);
+            synchronized (this) {
+                createdCount++;
+            }
+            return connection;
+        } catch (IOException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool for reuse.
+     * @param connection the connection that was borrowed.
+     */
+    public void release(final SmtpConnection connection) {
+        connection.touch();
+        final boolean keep;
+        synchronized (this) {
+            keep = !closed;
+            if (keep) {
+                idle.addFirst(connection);
+            }
+        }
+        if (!keep) {
+            connection.close();
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes a broken connection instead of giving it back to the pool.
+     * @param connection the connection that was borrowed.
+     */
+    public void invalidate(final SmtpConnection connection) {
+        connection.close();
+        permits.release();
+    }
+
+    /**
+     * Closes every connection that has been idle
+     * for longer than the idle timeout.
+     * The connections are taken out of the pool under its lock
+     * but said goodbye to outside of it.
+     * @return the number of connections evicted.
+     */
+    public int evictIdle() {
+        final long now = System.currentTimeMillis();
+        final List<SmtpConnection> evicted = new ArrayList<SmtpConnection>();
+        synchronized (this) {
+            final Iterator<SmtpConnection> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                final SmtpConnection connection = iterator.next();
+                if (now - connection.getLastUsedMillis() >= idleTimeoutMillis) {
+                    iterator.remove();
+                    evicted.add(connection);
+                }
+            }
+        }
+        for (SmtpConnection connection : evicted) {
+            connection.close();
+        }
+        return evicted.size();
+    }
+
+    /**
+     * Getter for the idleCount.
+     * @return the number of idle connections.
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Getter for the createdCount.
+     * @return the number of connections opened so far.
+     */
+    public synchronized int getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Closes all idle connections, connections still
+     * borrowed are closed when they are released.
+     */
+    @Override
+    public void close() {
+        final List<SmtpConnection> closing;
+        synchronized (this) {
+            closed = true;
+            closing = new ArrayList<SmtpConnection>(idle);
+            idle.clear();
+        }
+        for (SmtpConnection connection : closing) {
+            connection.close();
+        }
+    }
+
+    private synchronized void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The SMTP connection pool is closed");
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection,
+     * evicting the ones past their idle timeout on the way.
+     * @return an idle connection or null if there is none.
+     */
+    private SmtpConnection pollIdle() {
+        evictIdle();
+        synchronized (this) {
+            return idle.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.gitshah.powermock;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The WelcomeEmailSender that relays welcome emails
+ * to an SMTP server through a SmtpConnectionPool.
+ * A whole batch is sent over a single borrowed connection.
+ * An email with an invalid address is skipped and the rest of the batch
+ * is still sent, a broken connection stops the batch.
+ */
+public class SmtpWelcomeEmailSender implements WelcomeEmailSender {
+
+    private final SmtpConnectionPool pool;
+    private final String from;
+
+    /**
+     * The constructor that takes in the pool and the sender address.
+     * @param pool the pool to borrow connections from.
+     * @param from the sender address of the welcome emails.
+     */
+    public SmtpWelcomeEmailSender(final SmtpConnectionPool pool, final String from) {
+        this.pool = pool;
+        this.from = from;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(final List<WelcomeEmailTask> tasks) {
+        final SmtpConnection connection;
+        try {
+            connection = pool.borrow();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not connect to the SMTP server", e);
+        }
+        int sent = 0;
+        RuntimeException failure = null;
+        boolean broken = true;
+        try {
+            for (WelcomeEmailTask task : tasks) {
+                try {
+                    connection.send(from, task.getEmployee().getEmail(), task.getMessage());
+                    sent++;
+                } catch (IllegalArgumentException e) {
+                    failure = e;
+                }
+            }
+            broken = false;
+        } catch (IOException e) {
+            failure = new IllegalStateException("Could not send the welcome emails", e);
+        } finally {
+            if (broken) {
+                pool.invalidate(connection);
+            } else {
+                pool.release(connection);
+            }
+        }
+        if (sent < tasks.size()) {
+            throw new WelcomeEmailBatchException("Sent " + sent + " of " + tasks.size() + " welcome emails",
+                    sent, failure);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.gitshah.powermock;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded read-through cache using W-TinyLFU eviction.
+ * New entries go into a small LRU window; an entry pushed out of the window
+ * only enters the main space if the FrequencySketch says it is used more
+ * often than the entry it would evict. The main space is a segmented LRU
+ * with a probation and a protected segment.
+ * Entries also expire a fixed time after they were loaded.
+ * All operations are synchronized, loading happens outside the lock.
+ * A load that overlaps an invalidation of its key is returned but not cached,
+ * so it cannot bring back a value that was invalidated while it loaded,
+ * while loads of other keys are cached as usual.
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public class WTinyLfuCache<K, V> {
+
+    /**
+     * Loads the value of a key on a cache miss.
+     * @param <K> the key type.
+     * @param <V> the value type.
+     */
+    public interface Loader<K, V> {
+
+        /**
+         * Loads the value of a key.
+         * @param key the key to load.
+         * @return the value, may be null.
+         */
+        V load(K key);
+    }
+
+    private final Loader<K, V> loader;
+    private final long expireAfterWriteNanos;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    private final int mainMaximum;
+    private final FrequencySketch sketch;
+
+    private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+
+    /**
+     * The keys being loaded, with the stamp invalidating them bumps.
+     */
+    private final Map<K, Load> loads = new HashMap<K, Load>();
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long loadCount;
+    private long totalLoadNanos;
+
+    /**
+     * The constructor that configures the cache.
+     * @param loader loads values on a miss.
+     * @param maximumSize the maximum number of entries held.
+     * @param expireAfterWrite how long an entry is served after it was loaded.
+     * @param unit the unit of expireAfterWrite.
+     */
+    public WTinyLfuCache(final Loader<K, V> loader, final int maximumSize,
+                         final long expireAfterWrite, final TimeUnit unit) {
+        if (maximumSize < 2) {
+            throw new IllegalArgumentException("Maximum size must be at least 2: " + maximumSize);
+        }
+        this.loader = loader;
+        this.expireAfterWriteNanos = unit.toNanos(expireAfterWrite);
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.mainMaximum = maximumSize - windowMaximum;
+        this.protectedMaximum = (int) (mainMaximum * 0.8);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Returns the cached value of a key, loading it on a miss.
+     * @param key the key to look up.
+     * @return the value, may be null if the loader returned null.
+     */
+    public V get(final K key) {
+        final Load load;
+        final long stampBeforeLoad;
+        synchronized (this) {
+            sketch.increment(key);
+            final Entry<V> entry = find(key);
+            if (entry != null) {
+                hitCount++;
+                return entry.value;
+            }
+            missCount++;
+            Load current = loads.get(key);
+            if (current == null) {
+                current = new Load();
+                loads.put(key, current);
+            }
+            current.loaders++;
+            load = current;
+            stampBeforeLoad = current.stamp;
+        }
+
+        final long start = System.nanoTime();
+        V value = null;
+        boolean loaded = false;
+        try {
+            value = loader.load(key);
+            loaded = true;
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                if (--load.loaders == 0) {
+                    loads.remove(key);
+                }
+                if (loaded) {
+                    loadCount++;
+                    totalLoadNanos += elapsed;
+                    if (load.stamp == stampBeforeLoad) {
+                        put(key, value);
+                    }
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops the cached value of a key
+     * and keeps the loads of it in flight from caching theirs.
+     * @param key the key to invalidate.
+     */
+    public synchronized void invalidate(final K key) {
+        final Load load = loads.get(key);
+        if (load != null) {
+            load.stamp++;
+        }
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    /**
+     * Drops every cached value
+     * and keeps every load in flight from caching its value.
+     */
+    public synchronized void invalidateAll() {
+        for (Load load : loads.values()) {
+            load.stamp++;
+        }
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    /**
+     * Getter for the size.
+     * @return the number of cached entries.
+     */
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * Getter for the hitCount.
+     * @return the number of lookups served from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Getter for the missCount.
+     * @return the number of lookups that had to load.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Getter for the hitRatio.
+     * @return the share of lookups served from the cache, 0 before any lookup.
+     */
+    public synchronized double getHitRatio() {
+        final long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    /**
+     * Getter for the evictionCount.
+     * @return the number of entries evicted or refused admission for lack of space.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Getter for the averageLoadNanos.
+     * @return the average time the loader took, 0 before any load.
+     */
+    public synchronized long getAverageLoadNanos() {
+        return loadCount == 0 ? 0 : totalLoadNanos / loadCount;
+    }
+
+    /**
+     * Finds a live entry, dropping it if it expired,
+     * and promotes it from probation to protected on access.
+     */
+    private Entry<V> find(final K key) {
+        Entry<V> entry = window.get(key);
+        if (entry != null) {
+            return expireIfStale(key, entry, window);
+        }
+        entry = probation.get(key);
+        if (entry != null) {
+            if (expireIfStale(key, entry, probation) == null) {
+                return null;
+            }
+            probation.remove(key);
+            protectedSegment.put(key, entry);
+            if (protectedSegment.size() > protectedMaximum) {
+                final Map.Entry<K, Entry<V>> demoted = eldest(protectedSegment);
+                protectedSegment.remove(demoted.getKey());
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+            return entry;
+        }
+        entry = protectedSegment.get(key);
+        return entry == null ? null : expireIfStale(key, entry, protectedSegment);
+    }
+
+    private Entry<V> expireIfStale(final K key, final Entry<V> entry, final Map<K, Entry<V>> segment) {
+        if (System.nanoTime() - entry.loadedAt >= expireAfterWriteNanos) {
+            segment.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a freshly loaded value to the window,
+     * offering the entry it pushes out to the main space.
+     */
+    private void put(final K key, final V value) {
+        final Entry<V> entry = new Entry<V>(value, System.nanoTime());
+        if (probation.containsKey(key)) {
+            probation.put(key, entry);
+            return;
+        }
+        if (protectedSegment.containsKey(key)) {
+            protectedSegment.put(key, entry);
+            return;
+        }
+        window.put(key, entry);
+        if (window.size() > windowMaximum) {
+            final Map.Entry<K, Entry<V>> candidate = eldest(window);
+            window.remove(candidate.getKey());
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * Lets a candidate from the window into the main space when there is room,
+     * or when it is used more often than the main space's eviction victim.
+     */
+    private void admit(final K key, final Entry<V> entry) {
+        if (probation.size() + protectedSegment.size() < mainMaximum) {
+            probation.put(key, entry);
+            return;
+        }
+        final LinkedHashMap<K, Entry<V>> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+        final K victim = eldest(victimSegment).getKey();
+        evictionCount++;
+        if (sketch.frequency(key) > sketch.frequency(victim)) {
+            victimSegment.remove(victim);
+            probation.put(key, entry);
+        }
+    }
+
+    private static <K, V> Map.Entry<K, V> eldest(final LinkedHashMap<K, V> segment) {
+        final Iterator<Map.Entry<K, V>> iterator = segment.entrySet().iterator();
+        return iterator.next();
+    }
+
+    /**
+     * The loads of one key in flight.
+     */
+    private static final class Load {
+
+        private int loaders;
+
+        /**
+         * Bumped whenever the key is invalidated.
+         */
+        private long stamp;
+    }
+
+    /**
+     * A cached value with the time it was loaded.
+     */
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long loadedAt;
+
+        private Entry(final V value, final long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
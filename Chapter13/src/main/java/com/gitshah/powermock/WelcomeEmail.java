@@ -1,11 +1,26 @@
 package com.gitshah.powermock;
 
+import java.io.IOException;
+
 /**
  * The class that is responsible to send the Emails to employees.
  * @author Deep Shah
  */
 public class WelcomeEmail {
 
+    /**
+     * The sender address of every welcome email.
+     */
+    public static final String FROM = "noreply@gitshah.com";
+
+    private final Employee employee;
+    private final String message;
+
+    /**
+     * The pool the SMTP connection is borrowed from.
+     */
+    private final SmtpConnectionPool pool;
+
     /**
      * The constructor for the WelcomeEmail
      * is going to connect to the SMTP server
@@ -18,11 +33,50 @@ public class WelcomeEmail {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * The constructor for the WelcomeEmail
+     * that borrows its SMTP connection from a pool
+     * only for the time it takes to send the message,
+     * instead of opening its own connection.
+     * @param employee the employee to welcome.
+     * @param message the message body.
+     * @param pool the pool to borrow the SMTP connection from.
+     */
+    public WelcomeEmail(final Employee employee, final String message, final SmtpConnectionPool pool) {
+        this.employee = employee;
+        this.message = message;
+        this.pool = pool;
+    }
+
     /**
      * This method is responsible for actually sending the email.
-     * Currently this method throws UnsupportedOperationException.
+     * The connection is borrowed from the pool and handed back afterwards,
+     * still healthy when the address was refused before anything was sent.
+     * @throws IllegalArgumentException if the employee's address is missing or contains a line break.
+     * @throws IllegalStateException if the email could not be sent.
      */
     public void send() {
-        throw new UnsupportedOperationException();
+        final SmtpConnection connection;
+        try {
+            connection = pool.borrow();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not connect to the SMTP server", e);
+        }
+        boolean healthy = false;
+        try {
+            connection.send(FROM, employee.getEmail(), message);
+            healthy = true;
+        } catch (IllegalArgumentException e) {
+            healthy = true;
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not send the welcome email", e);
+        } finally {
+            if (healthy) {
+                pool.release(connection);
+            } else {
+                pool.invalidate(connection);
+            }
+        }
     }
 }
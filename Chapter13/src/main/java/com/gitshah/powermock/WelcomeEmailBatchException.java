@@ -0,0 +1,31 @@
+package com.gitshah.powermock;
+
+/**
+ * Thrown by a WelcomeEmailSender when only the first emails of a batch
+ * were sent, so the ones already accepted are not counted as failed.
+ */
+public class WelcomeEmailBatchException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int sentCount;
+
+    /**
+     * The constructor that takes in how far the batch got.
+     * @param message the detail message.
+     * @param sentCount the number of emails of the batch that were sent.
+     * @param cause the reason the rest were not.
+     */
+    public WelcomeEmailBatchException(final String message, final int sentCount, final Throwable cause) {
+        super(message, cause);
+        this.sentCount = sentCount;
+    }
+
+    /**
+     * Getter for the sentCount.
+     * @return the number of emails of the batch that were sent.
+     */
+    public int getSentCount() {
+        return sentCount;
+    }
+}
@@ -0,0 +1,179 @@
+package com.gitshah.powermock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The outbox that decouples sending welcome emails from creating employees.
+ * Emails are queued as lightweight WelcomeEmailTask instances and
+ * a fixed pool of workers drains the queue in batches through
+ * a shared WelcomeEmailSender.
+ */
+public class WelcomeEmailOutbox {
+
+    /**
+     * The maximum number of emails a worker hands to the sender at once.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * How long an idle worker waits for an email before
+     * checking whether the outbox was closed.
+     */
+    private static final long POLL_MILLIS = 50;
+
+    private final BlockingQueue<WelcomeEmailTask> queue;
+    private final WelcomeEmailSender sender;
+    private final ExecutorService workers;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final long startedAt = System.nanoTime();
+
+    private volatile boolean closed;
+
+    /**
+     * The constructor that starts the workers, as daemon threads.
+     * @param sender the transport to send the emails through.
+     * @param capacity the maximum number of queued emails.
+     * @param workerCount the number of worker threads.
+     */
+    public WelcomeEmailOutbox(final WelcomeEmailSender sender, final int capacity, final int workerCount) {
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<WelcomeEmailTask>(capacity);
+        this.workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+            private int created;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "welcome-email-outbox-" + created++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues a welcome email and returns straight away.
+     * Blocks while the outbox is full, until it is closed.
+     * An email either gets queued before the outbox closes,
+     * and is then sent by the workers, or is refused.
+     * @param employee the employee to welcome.
+     * @param message the message body.
+     * @throws IllegalStateException if the outbox was closed.
+     */
+    public void enqueue(final Employee employee, final String message) {
+        final WelcomeEmailTask task = new WelcomeEmailTask(employee, message);
+        try {
+            while (!queue.offer(task, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkOpen();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a welcome email", e);
+        }
+        //The workers may have seen the outbox closed and empty before the email got in.
+        //Unless one of them already took it, take it back out.
+        if (closed && queue.remove(task)) {
+            checkOpen();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The welcome email outbox is closed");
+        }
+    }
+
+    /**
+     * Getter for the queueDepth.
+     * @return the number of emails waiting to be sent.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Getter for the sentCount.
+     * @return the number of emails sent so far.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Getter for the failedCount.
+     * @return the number of emails the sender failed to send.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Getter for the drainRate.
+     * @return the average number of emails sent per second since the outbox started.
+     */
+    public double getDrainRate() {
+        final long elapsed = Math.max(1, System.nanoTime() - startedAt);
+        return sentCount.get() * 1000000000.0 / elapsed;
+    }
+
+    /**
+     * Stops accepting emails, sends whatever is still queued
+     * and stops the workers.
+     * @param timeout how long to wait for the queue to drain.
+     * @param unit the unit of the timeout.
+     * @return true if the queue was drained in time, false otherwise.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean close(final long timeout, final TimeUnit unit) throws InterruptedException {
+        closed = true;
+        workers.shutdown();
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * The worker loop, sends queued emails in batches
+     * until the outbox is closed and the queue is empty.
+     */
+    private void drain() {
+        final List<WelcomeEmailTask> batch = new ArrayList<WelcomeEmailTask>(MAX_BATCH_SIZE);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                final WelcomeEmailTask first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                sender.send(batch);
+                sentCount.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (WelcomeEmailBatchException e) {
+                sentCount.addAndGet(e.getSentCount());
+                failedCount.addAndGet(batch.size() - e.getSentCount());
+            } catch (RuntimeException e) {
+                failedCount.addAndGet(batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.gitshah.powermock;
+
+import java.util.List;
+
+/**
+ * The transport the WelcomeEmailOutbox workers relay welcome emails through.
+ * An implementation is shared by all workers and is expected to reuse
+ * its connections between calls.
+ */
+public interface WelcomeEmailSender {
+
+    /**
+     * Sends a batch of welcome emails.
+     * @param tasks the emails to send, in queue order.
+     * @throws WelcomeEmailBatchException if only some of the emails were sent.
+     */
+    void send(List<WelcomeEmailTask> tasks);
+}
@@ -0,0 +1,38 @@
+package com.gitshah.powermock;
+
+/**
+ * A welcome email waiting in the WelcomeEmailOutbox.
+ * It only holds the employee and the message,
+ * no connection is made until a worker sends it.
+ */
+public class WelcomeEmailTask {
+
+    private final Employee employee;
+    private final String message;
+
+    /**
+     * The constructor that takes in the employee and the message.
+     * @param employee the employee to welcome.
+     * @param message the message body.
+     */
+    public WelcomeEmailTask(final Employee employee, final String message) {
+        this.employee = employee;
+        this.message = message;
+    }
+
+    /**
+     * Getter for the employee.
+     * @return the employee to welcome.
+     */
+    public Employee getEmployee() {
+        return employee;
+    }
+
+    /**
+     * Getter for the message.
+     * @return the message body.
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,123 @@
+package com.gitshah.powermock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A welcome email template compiled once into a list of segments.
+ * Rendering walks the segments and appends straight into
+ * a caller supplied StringBuilder, so no intermediate strings,
+ * format parsing or regular expressions are involved per message.
+ * Placeholders are written as {{email}}, {{employeeId}} and {{department}}.
+ */
+public final class WelcomeEmailTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    /**
+     * The values a placeholder can refer to.
+     */
+    private enum Field {
+        EMAIL("email"),
+        EMPLOYEE_ID("employeeId"),
+        DEPARTMENT("department");
+
+        private final String placeholder;
+
+        Field(final String placeholder) {
+            this.placeholder = placeholder;
+        }
+
+        private static Field forPlaceholder(final String placeholder) {
+            for (Field field : values()) {
+                if (field.placeholder.equals(placeholder)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown welcome email placeholder: " + placeholder);
+        }
+    }
+
+    /**
+     * The literal text preceding each field, one more than fields.
+     */
+    private final String[] literals;
+
+    /**
+     * The fields in the order they appear in the template.
+     */
+    private final Field[] fields;
+
+    private WelcomeEmailTemplate(final String[] literals, final Field[] fields) {
+        this.literals = literals;
+        this.fields = fields;
+    }
+
+    /**
+     * Parses the template text once.
+     * @param template the template text.
+     * @return the compiled template.
+     * @throws IllegalArgumentException if a placeholder is unknown or not closed.
+     */
+    public static WelcomeEmailTemplate compile(final String template) {
+        final List<String> literals = new ArrayList<String>();
+        final List<Field> fields = new ArrayList<Field>();
+        int position = 0;
+        int open;
+        while ((open = template.indexOf(OPEN, position)) >= 0) {
+            final int close = template.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed welcome email placeholder at " + open);
+            }
+            literals.add(template.substring(position, open));
+            fields.add(Field.forPlaceholder(template.substring(open + OPEN.length(), close).trim()));
+            position = close + CLOSE.length();
+        }
+        literals.add(template.substring(position));
+        return new WelcomeEmailTemplate(literals.toArray(new String[literals.size()]),
+                fields.toArray(new Field[fields.size()]));
+    }
+
+    /**
+     * Renders the template for an employee into the given buffer.
+     * The buffer is appended to, so callers can clear and reuse it.
+     * @param employee the employee to welcome.
+     * @param department the department name, rendered empty when null.
+     * @param buffer the buffer to append the message to.
+     * @return the buffer, for chaining.
+     */
+    public StringBuilder render(final Employee employee, final String department, final StringBuilder buffer) {
+        for (int i = 0; i < fields.length; i++) {
+            buffer.append(literals[i]);
+            switch (fields[i]) {
+                case EMAIL:
+                    if (employee.getEmail() != null) {
+                        buffer.append(employee.getEmail());
+                    }
+                    break;
+                case EMPLOYEE_ID:
+                    buffer.append(employee.getEmployeeId());
+                    break;
+                case DEPARTMENT:
+                    if (department != null) {
+                        buffer.append(department);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled field " + fields[i]);
+            }
+        }
+        return buffer.append(literals[fields.length]);
+    }
+
+    /**
+     * Renders the template for an employee into a new String.
+     * @param employee the employee to welcome.
+     * @param department the department name, rendered empty when null.
+     * @return the message body.
+     */
+    public String render(final Employee employee, final String department) {
+        return render(employee, department, new StringBuilder(128)).toString();
+    }
+}
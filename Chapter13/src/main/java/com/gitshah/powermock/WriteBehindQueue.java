@@ -0,0 +1,502 @@
+package com.gitshah.powermock;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples Employee.save() from the store it writes to.
+ * Saved employees are queued and a background thread writes them
+ * through an EmployeeBatchWriter in batches, as soon as a full batch
+ * is waiting or the oldest queued save reaches the maximum delay.
+ * Saving an employee that is still queued only replaces the queued copy,
+ * so an employee saved many times between flushes is written once.
+ * The maximum delay bounds how many saves a crash can lose, and
+ * close() writes everything still queued. A batch that fails to write
+ * is retried one employee at a time right away, so one bad record does
+ * not hold up the rest of its batch, and the saves that fail on their own
+ * are put back at the front of the queue and retried after the maximum delay.
+ * A save that failed maxAttempts times is given up on and moved to the
+ * dead letters, see drainDeadLetters; saving the employee again starts over.
+ * The capacity counts the batch being written as well, so putting
+ * a failed batch back never grows the queue past it.
+ */
+public class WriteBehindQueue implements Closeable {
+
+    /**
+     * How often a save is attempted before it is moved to the dead letters,
+     * unless configured otherwise.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /**
+     * What a save does when the queue is full.
+     */
+    public enum BackpressurePolicy {
+
+        /**
+         * Wait until the background thread made room.
+         */
+        BLOCK,
+
+        /**
+         * Throw a RejectedExecutionException.
+         */
+        REJECT,
+
+        /**
+         * Write the employee straight through on the saving thread.
+         */
+        WRITE_THROUGH
+    }
+
+    private final EmployeeBatchWriter writer;
+    private final int capacity;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BackpressurePolicy backpressurePolicy;
+    private final int maxAttempts;
+
+    /**
+     * The queued saves by employee, in the order they were first saved.
+     * Guards the queue state and is what producers and the flusher wait on.
+     */
+    private final LinkedHashMap<Integer, Pending> pending = new LinkedHashMap<Integer, Pending>();
+
+    /**
+     * Held while a batch is taken and written,
+     * so batches reach the writer in queue order.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * The number of saves taken off the queue and being written, guarded by pending.
+     */
+    private int inFlight;
+
+    /**
+     * The saves given up on, guarded by pending.
+     */
+    private final List<Employee> deadLetters = new ArrayList<Employee>();
+
+    private final Thread flusher;
+    private boolean closed;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong failedBatchCount = new AtomicLong();
+    private final AtomicLong deadLetterCount = new AtomicLong();
+    private volatile RuntimeException lastFailure;
+
+    /**
+     * The constructor that starts the background flusher.
+     * @param writer the store to write the employees to.
+     * @param capacity the maximum number of employees queued or being written.
+     * @param batchSize the number of employees written at once.
+     * @param maxDelay the longest a save waits in the queue while the writer keeps up.
+     * @param unit the unit of maxDelay.
+     * @param backpressurePolicy what a save does when the queue is full.
+     */
+    public WriteBehindQueue(final EmployeeBatchWriter writer, final int capacity, final int batchSize,
+                            final long maxDelay, final TimeUnit unit, final BackpressurePolicy backpressurePolicy) {
+        this(writer, capacity, batchSize, maxDelay, unit, backpressurePolicy, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * The constructor that starts the background flusher
+     * and also takes in how often a save is attempted.
+     * @param writer the store to write the employees to.
+     * @param capacity the maximum number of employees queued or being written.
+     * @param batchSize the number of employees written at once.
+     * @param maxDelay the longest a save waits in the queue while the writer keeps up.
+     * @param unit the unit of maxDelay.
+     * @param backpressurePolicy what a save does when the queue is full.
+     * @param maxAttempts the number of failed writes after which a save is given up on.
+     */
+    public WriteBehindQueue(final EmployeeBatchWriter writer, final int capacity, final int batchSize,
+                            final long maxDelay, final TimeUnit unit, final BackpressurePolicy backpressurePolicy,
+                            final int maxAttempts) {
+        if (batchSize < 1 || capacity < batchSize) {
+            throw new IllegalArgumentException("Need 0 < batchSize <= capacity, got " + batchSize + " and " + capacity);
+        }
+        if (maxDelay <= 0) {
+            throw new IllegalArgumentException("Maximum delay must be positive: " + maxDelay);
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Maximum attempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.writer = writer;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.backpressurePolicy = backpressurePolicy;
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushInBackground();
+            }
+        }, "employee-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues a save of the employee, or replaces its queued save.
+     * @param employee the employee to save.
+     * @throws IllegalArgumentException if the employee has no id yet,
+     * it could never be written and would hold up every batch it is in.
+     * @throws IllegalStateException if the queue was closed.
+     * @throws RejectedExecutionException if the queue is full and the policy is REJECT.
+     */
+    public void enqueue(final Employee employee) {
+        if (employee.getEmployeeId() == 0) {
+            throw new IllegalArgumentException("Employee has no id yet, it cannot be saved behind");
+        }
+        final Integer key = Integer.valueOf(employee.getEmployeeId());
+        synchronized (pending) {
+            checkOpen();
+            final Pending queued = pending.get(key);
+            if (queued != null) {
+                queued.employee = employee;
+                queued.attempts = 0;
+                coalescedCount.incrementAndGet();
+                return;
+            }
+            while (isFull() && backpressurePolicy == BackpressurePolicy.BLOCK) {
+                pending.notifyAll();
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for room in the write-behind queue", e);
+                }
+                checkOpen();
+            }
+            if (!isFull()) {
+                pending.put(key, new Pending(employee, System.nanoTime()));
+                if (pending.size() >= batchSize) {
+                    pending.notifyAll();
+                }
+                return;
+            }
+            if (backpressurePolicy == BackpressurePolicy.REJECT) {
+                throw new RejectedExecutionException("The write-behind queue is full: " + capacity);
+            }
+        }
+
+        final List<Employee> single = new ArrayList<Employee>(1);
+        single.add(employee);
+        synchronized (writeLock) {
+            //A failed batch may have put an older save of the employee back meanwhile.
+            synchronized (pending) {
+                final Pending requeued = pending.get(key);
+                if (requeued != null) {
+                    requeued.employee = employee;
+                    requeued.attempts = 0;
+                    coalescedCount.incrementAndGet();
+                    return;
+                }
+            }
+            writer.write(single);
+        }
+        writtenCount.incrementAndGet();
+    }
+
+    /**
+     * Writes everything queued on the calling thread.
+     * @throws IllegalStateException if a batch failed to write, it stays queued.
+     */
+    public void flush() {
+        while (true) {
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+            if (!writeBatch()) {
+                throw new IllegalStateException("Failed to flush the write-behind queue", lastFailure);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting saves, stops the background flusher
+     * and writes everything still queued.
+     * @throws IllegalStateException if a batch failed to write.
+     */
+    @Override
+    public void close() {
+        synchronized (pending) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Closes the queue when the JVM shuts down,
+     * so saves queued at that point are not lost.
+     */
+    public void closeOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, "employee-write-behind-shutdown"));
+    }
+
+    /**
+     * Getter for the pendingCount.
+     * @return the number of employees waiting to be written.
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Getter for the oldestPendingMillis.
+     * @return how long the oldest queued save has waited, 0 if none is queued.
+     */
+    public long getOldestPendingMillis() {
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest().enqueuedAt);
+        }
+    }
+
+    /**
+     * Getter for the writtenCount.
+     * @return the number of employees written so far.
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Getter for the coalescedCount.
+     * @return the number of saves merged into one already queued.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Getter for the failedBatchCount.
+     * @return the number of batch writes that failed.
+     */
+    public long getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+    /**
+     * Getter for the deadLetterCount.
+     * @return the number of saves given up on so far.
+     */
+    public long getDeadLetterCount() {
+        return deadLetterCount.get();
+    }
+
+    /**
+     * Takes the saves that were given up on after maxAttempts failed writes.
+     * @return the employees whose save was given up on since the last call,
+     * oldest first.
+     */
+    public List<Employee> drainDeadLetters() {
+        synchronized (pending) {
+            final List<Employee> drained = new ArrayList<Employee>(deadLetters);
+            deadLetters.clear();
+            return drained;
+        }
+    }
+
+    /**
+     * The flusher loop, writes a batch whenever one is due
+     * and backs off for the maximum delay after a failed write.
+     * Producers wake it up whenever they notify, so every wait
+     * is repeated until its deadline has passed.
+     */
+    private void flushInBackground() {
+        boolean backOff = false;
+        while (true) {
+            synchronized (pending) {
+                try {
+                    if (backOff) {
+                        final long retryAt = System.nanoTime() + maxDelayNanos;
+                        long backOffNanos;
+                        while (!closed && (backOffNanos = retryAt - System.nanoTime()) > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(pending, backOffNanos);
+                        }
+                    }
+                    long waitNanos;
+                    while (!closed && (waitNanos = nanosUntilDue()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(pending, waitNanos);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            backOff = !writeBatch();
+        }
+    }
+
+    /**
+     * Works out how long until a batch is due.
+     * @return 0 if a batch is due now, otherwise the nanos to wait.
+     */
+    private long nanosUntilDue() {
+        if (pending.isEmpty()) {
+            return maxDelayNanos;
+        }
+        if (pending.size() >= batchSize) {
+            return 0;
+        }
+        return Math.max(0, oldest().enqueuedAt + maxDelayNanos - System.nanoTime());
+    }
+
+    /**
+     * Takes the oldest queued saves off the queue and writes them,
+     * one at a time if the batch fails, putting the ones that still
+     * fail back at the front.
+     * @return true if every save was written, false if any failed.
+     */
+    private boolean writeBatch() {
+        synchronized (writeLock) {
+            final List<Map.Entry<Integer, Pending>> taken = new ArrayList<Map.Entry<Integer, Pending>>(batchSize);
+            final List<Employee> batch = new ArrayList<Employee>(batchSize);
+            synchronized (pending) {
+                final Iterator<Map.Entry<Integer, Pending>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    final Map.Entry<Integer, Pending> entry = iterator.next();
+                    taken.add(entry);
+                    batch.add(entry.getValue().employee);
+                    iterator.remove();
+                }
+                inFlight = batch.size();
+            }
+            if (batch.isEmpty()) {
+                return true;
+            }
+            try {
+                writer.write(batch);
+                writtenCount.addAndGet(batch.size());
+                synchronized (pending) {
+                    inFlight = 0;
+                    pending.notifyAll();
+                }
+                return true;
+            } catch (RuntimeException e) {
+                lastFailure = e;
+                failedBatchCount.incrementAndGet();
+                final List<Map.Entry<Integer, Pending>> failed = batch.size() == 1 ? taken : writeOneByOne(taken);
+                requeue(failed);
+                return failed.isEmpty();
+            }
+        }
+    }
+
+    /**
+     * Writes the saves of a failed batch one at a time.
+     * @return the saves that failed on their own.
+     */
+    private List<Map.Entry<Integer, Pending>> writeOneByOne(final List<Map.Entry<Integer, Pending>> taken) {
+        final List<Map.Entry<Integer, Pending>> failed = new ArrayList<Map.Entry<Integer, Pending>>();
+        final List<Employee> single = new ArrayList<Employee>(1);
+        for (Map.Entry<Integer, Pending> entry : taken) {
+            single.clear();
+            single.add(entry.getValue().employee);
+            try {
+                writer.write(single);
+                writtenCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                lastFailure = e;
+                failed.add(entry);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Puts the failed saves of a batch back at the front of the queue,
+     * keeping any newer save of the same employee queued since.
+     * Saves that failed maxAttempts times are moved to the dead letters instead.
+     */
+    private void requeue(final List<Map.Entry<Integer, Pending>> taken) {
+        synchronized (pending) {
+            final LinkedHashMap<Integer, Pending> queued = new LinkedHashMap<Integer, Pending>(pending);
+            pending.clear();
+            for (Map.Entry<Integer, Pending> entry : taken) {
+                final Pending requeued = entry.getValue();
+                final Pending newer = queued.remove(entry.getKey());
+                if (newer != null) {
+                    requeued.employee = newer.employee;
+                    requeued.attempts = 0;
+                } else if (++requeued.attempts >= maxAttempts) {
+                    deadLetters.add(requeued.employee);
+                    deadLetterCount.incrementAndGet();
+                    continue;
+                }
+                pending.put(entry.getKey(), requeued);
+            }
+            pending.putAll(queued);
+            inFlight = 0;
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Checks whether the queued saves and the batch being written
+     * together fill the capacity.
+     */
+    private boolean isFull() {
+        return pending.size() + inFlight >= capacity;
+    }
+
+    private Pending oldest() {
+        return pending.values().iterator().next();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The write-behind queue is closed");
+        }
+    }
+
+    /**
+     * A queued save, when the employee was first queued
+     * and how often writing it failed.
+     */
+    private static final class Pending {
+
+        private Employee employee;
+        private final long enqueuedAt;
+        private int attempts;
+
+        private Pending(final Employee employee, final long enqueuedAt) {
+            this.employee = employee;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
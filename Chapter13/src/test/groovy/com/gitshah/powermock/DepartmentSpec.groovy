@@ -29,6 +29,7 @@ import spock.lang.Subject
 From 'Mock Testing with PowerMock' pp 67-68; Mocking "Supressing unwanted behavior (Advanced)"
 
 - Suppress a static initializer
+- Read the net worth of a department from its running salary statistics
 
 """)
 
@@ -85,4 +86,65 @@ public class DepartmentSpec extends Specification {
         then: "Verify the expected results"
         netWorth == expectedNetWorth
     }
+
+
+    def "Should calculate the net worth of the department from the salaries of its employees"() {
+
+        given: "Suppress the super class constructor"
+        PowerMockito.suppress(PowerMockito.constructor(BaseEntity))
+
+        and: "A department with two employees"
+        def department = new Department()
+        department.addEmployee(new Employee(salary: 60000))
+        department.addEmployee(new Employee(salary: 30000))
+
+        expect: "The net worth is the sum of the salaries"
+        department.calculateTotalNetWorth() == 90000
+        department.calculateTotalNetWorthAsLong() == 90000L
+    }
+
+
+    def "Should keep the net worth up to date as salaries change and employees leave"() {
+
+        given: "Suppress the super class constructor"
+        PowerMockito.suppress(PowerMockito.constructor(BaseEntity))
+
+        and: "A department with two employees"
+        def employee = new Employee(salary: 60000)
+        def department = new Department()
+        department.addEmployee(employee)
+        department.addEmployee(new Employee(salary: 30000))
+
+        when: "A salary changes"
+        employee.salary = 65000
+
+        then: "The net worth follows it"
+        department.calculateTotalNetWorthAsLong() == 95000L
+
+        when: "The employee leaves"
+        department.removeEmployee(employee)
+
+        then: "Only the remaining salary is counted"
+        department.calculateTotalNetWorthAsLong() == 30000L
+    }
+
+
+    def "Should sum the salaries of a large department beyond the range of an int"() {
+
+        given: "Suppress the super class constructor"
+        PowerMockito.suppress(PowerMockito.constructor(BaseEntity))
+
+        and: "A department of 25,000 employees earning 150,000 each"
+        def department = new Department()
+        25000.times { department.addEmployee(new Employee(salary: 150000)) }
+
+        expect: "The long net worth is exact"
+        department.calculateTotalNetWorthAsLong() == 3750000000L
+
+        when: "Asking for the net worth as an int"
+        department.calculateTotalNetWorth()
+
+        then: "It does not fit"
+        thrown(ArithmeticException)
+    }
 }
\ No newline at end of file
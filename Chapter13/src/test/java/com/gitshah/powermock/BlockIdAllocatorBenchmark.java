@@ -0,0 +1,48 @@
+package com.gitshah.powermock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for how many ids per second a BlockIdAllocator
+ * hands out when it is shared between 4 threads.
+ * A block size of 1 reserves a block from the source for every id,
+ * the way EmployeeIdGenerator would without block allocation.
+ * Run with: gradle jmh -Pbenchmarks=BlockIdAllocator
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class BlockIdAllocatorBenchmark {
+
+    @Param({"1", "1000"})
+    private int blockSize;
+
+    private BlockIdAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        allocator = new BlockIdAllocator(new InMemoryIdBlockSource(), blockSize);
+    }
+
+    @Benchmark
+    public int nextId() {
+        return allocator.nextId();
+    }
+}
@@ -0,0 +1,85 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class that holds all unit tests for
+ * the BlockIdAllocator class.
+ */
+public class BlockIdAllocatorTest {
+
+    @Test
+    public void shouldHandOutConsecutiveIdsFromTheReservedBlock() {
+        final IdBlockSource source = PowerMockito.mock(IdBlockSource.class);
+        PowerMockito.when(source.reserveBlock(3)).thenReturn(100L, 500L);
+
+        final BlockIdAllocator allocator = new BlockIdAllocator(source, 3);
+
+        Assert.assertEquals(100, allocator.nextId());
+        Assert.assertEquals(101, allocator.nextId());
+        Assert.assertEquals(102, allocator.nextId());
+
+        //The first block is exhausted so the next id comes from a new block.
+        Assert.assertEquals(500, allocator.nextId());
+        Mockito.verify(source, Mockito.times(2)).reserveBlock(3);
+    }
+
+    @Test
+    public void shouldNeverHandOutTheSameIdTwiceAcrossThreads() throws Exception {
+        final int threads = 8;
+        final int idsPerThread = 5000;
+        final BlockIdAllocator allocator = new BlockIdAllocator(new InMemoryIdBlockSource(), 64);
+        final Set<Integer> ids = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < idsPerThread; n++) {
+                        ids.add(allocator.nextId());
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Assert.assertEquals(threads * idsPerThread, ids.size());
+    }
+
+    @Test
+    public void shouldReserveAContiguousRangeOfIdsInOneCall() {
+        final BlockIdAllocator allocator = new BlockIdAllocator(new InMemoryIdBlockSource(), 10);
+        Assert.assertEquals(1, allocator.nextId());
+
+        //The range is reserved from the source, past the current block.
+        Assert.assertEquals(11, allocator.reserveIds(250));
+        Assert.assertEquals(2, allocator.nextId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectANonPositiveBlockSize() {
+        new BlockIdAllocator(new InMemoryIdBlockSource(), 0);
+    }
+
+    @Test
+    public void shouldGenerateIdsFromTheBlockAllocatorOnceSwitchedOn() {
+        EmployeeIdGenerator.useBlockAllocation(new BlockIdAllocator(new InMemoryIdBlockSource(42), 10));
+        try {
+            Assert.assertEquals(42, EmployeeIdGenerator.getNextId());
+            Assert.assertEquals(43, EmployeeIdGenerator.getNextId());
+        } finally {
+            EmployeeIdGenerator.useBlockAllocation(null);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class that holds all unit tests for
+ * the BulkSalaryIncrement class.
+ */
+public class BulkSalaryIncrementTest {
+
+    /**
+     * An employee whose update succeeds unless it was told to fail.
+     */
+    private static Employee employee(final long salary, final boolean failsToUpdate) {
+        final Employee employee = new Employee() {
+            @Override
+            public void update() {
+                if (failsToUpdate) {
+                    throw new IllegalStateException("Row locked");
+                }
+            }
+        };
+        employee.setSalary(salary);
+        employee.markClean();
+        return employee;
+    }
+
+    @Test
+    public void shouldRoundIncrementsHalfAwayFromZeroWithIntegerMath() {
+        Assert.assertEquals(66000, BulkSalaryIncrement.incrementedSalary(60000, 10));
+        Assert.assertEquals(1, BulkSalaryIncrement.incrementedSalary(1, 49));
+        Assert.assertEquals(2, BulkSalaryIncrement.incrementedSalary(1, 50));
+        Assert.assertEquals(-2, BulkSalaryIncrement.incrementedSalary(-1, 50));
+        Assert.assertEquals(0, BulkSalaryIncrement.incrementedSalary(60000, -100));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void shouldRefuseIncrementsThatOverflow() {
+        BulkSalaryIncrement.incrementedSalary(Long.MAX_VALUE / 2, 100);
+    }
+
+    @Test
+    public void shouldIncrementEveryEmployeeAcrossChunksAndReportProgress() {
+        final List<Employee> employees = new ArrayList<Employee>();
+        for (int i = 0; i < 10000; i++) {
+            employees.add(employee(50000 + i, false));
+        }
+        final AtomicInteger completions = new AtomicInteger();
+        final AtomicInteger reports = new AtomicInteger();
+
+        final BulkIncrementReport report = new BulkSalaryIncrement(employees, 10, 1000,
+                new SalaryIncrementProgressListener() {
+                    @Override
+                    public void progressed(int processed, int total) {
+                        if (processed == total) {
+                            completions.incrementAndGet();
+                        }
+                        reports.incrementAndGet();
+                    }
+                }).run(ForkJoinPool.commonPool());
+
+        Assert.assertTrue(report.isSuccessful());
+        Assert.assertEquals(10000, report.getIncrementedCount());
+        Assert.assertEquals(10, reports.get());
+        Assert.assertEquals(1, completions.get());
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(BulkSalaryIncrement.incrementedSalary(50000 + i, 10), employees.get(i).getSalary());
+        }
+    }
+
+    @Test
+    public void shouldRestoreTheSalaryOfEmployeesThatFailToUpdateAndCarryOn() {
+        final Employee failing = employee(60000, true);
+        final AtomicInteger salaryChanges = new AtomicInteger();
+        failing.setSalaryChangeListener(new SalaryChangeListener() {
+            @Override
+            public void salaryChanged(Employee employee, long oldSalary, long newSalary) {
+                salaryChanges.incrementAndGet();
+            }
+        });
+        final List<Employee> employees = new ArrayList<Employee>();
+        employees.add(employee(50000, false));
+        employees.add(failing);
+        employees.add(employee(70000, false));
+
+        final BulkIncrementReport report = new EmployeeService().giveIncrementTo(employees, 10, null);
+
+        Assert.assertFalse(report.isSuccessful());
+        Assert.assertEquals(2, report.getIncrementedCount());
+        Assert.assertEquals(60000, failing.getSalary());
+        //The raise that never reached the DB leaves no trace.
+        Assert.assertFalse(failing.isDirty());
+        Assert.assertEquals(0, salaryChanges.get());
+        Assert.assertEquals(55000, employees.get(0).getSalary());
+        Assert.assertTrue(report.getFailures().get(failing) instanceof IllegalStateException);
+    }
+}
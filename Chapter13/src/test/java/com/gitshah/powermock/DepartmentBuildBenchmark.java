@@ -0,0 +1,99 @@
+package com.gitshah.powermock;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for building a department of n employees
+ * through Department.addEmployee against rescanning
+ * all employees for the max salary on every insert.
+ * The BaseEntity static initializer throws, so the benchmark
+ * strips it with javassist before Department is first loaded.
+ * Run with: gradle jmh -Pbenchmarks=DepartmentBuild
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepartmentBuildBenchmark {
+
+    static {
+        try {
+            final CtClass baseEntity = ClassPool.getDefault().get("com.gitshah.powermock.BaseEntity");
+            baseEntity.removeConstructor(baseEntity.getClassInitializer());
+            baseEntity.toClass();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not strip the BaseEntity static initializer", e);
+        }
+    }
+
+    @Param({"1000", "10000", "40000"})
+    private int size;
+
+    private Employee[] employees;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        employees = new Employee[size];
+        for (int i = 0; i < size; i++) {
+            employees[i] = new Employee();
+            employees[i].setSalary(30000 + random.nextInt(100000));
+        }
+    }
+
+    /**
+     * An employee belongs to at most one department,
+     * so release them from the one built by the last invocation.
+     */
+    @Setup(Level.Invocation)
+    public void releaseEmployees() {
+        for (Employee employee : employees) {
+            employee.setSalaryChangeListener(null);
+        }
+    }
+
+    @Benchmark
+    public long department() {
+        final Department department = new Department();
+        for (Employee employee : employees) {
+            department.addEmployee(employee);
+        }
+        return department.getMaxSalaryOffered();
+    }
+
+    @Benchmark
+    public long rescan() {
+        final List<Employee> members = new ArrayList<Employee>();
+        long maxSalaryOffered = 0;
+        for (Employee employee : employees) {
+            members.add(employee);
+            maxSalaryOffered = 0;
+            for (Employee member : members) {
+                if (member.getSalary() > maxSalaryOffered) {
+                    maxSalaryOffered = member.getSalary();
+                }
+            }
+        }
+        return maxSalaryOffered;
+    }
+}
@@ -8,8 +8,10 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * The class that holds all tests related to the Department class.
@@ -89,4 +91,174 @@ public class DepartmentTest {
     public void shouldReturnNetWorthOfTheDepartment() {
         Assert.assertEquals(new Department().calculateTotalNetWorth(), 90000);
     }
+
+    @Test
+    public void shouldKeepTrackOfMaxSalaryOfferedWhileAddingEmployees() {
+        final Department department = new Department();
+        final Employee employee1 = new Employee();
+        final Employee employee2 = new Employee();
+        employee1.setSalary(65000);
+        employee2.setSalary(60000);
+
+        department.addEmployee(employee1);
+        department.addEmployee(employee2);
+
+        Assert.assertEquals(65000, department.getMaxSalaryOffered());
+    }
+
+    @Test
+    public void shouldRecalculateMaxSalaryOfferedWhenTheBestPaidEmployeeIsRemoved() {
+        final Department department = new Department();
+        final Employee employee1 = new Employee();
+        final Employee employee2 = new Employee();
+        employee1.setSalary(60000);
+        employee2.setSalary(65000);
+        department.addEmployee(employee1);
+        department.addEmployee(employee2);
+
+        Assert.assertTrue(department.removeEmployee(employee2));
+        Assert.assertEquals(60000, department.getMaxSalaryOffered());
+
+        //An employee that is no longer part of the department is not tracked anymore.
+        employee2.setSalary(90000);
+        Assert.assertEquals(60000, department.getMaxSalaryOffered());
+        Assert.assertFalse(department.removeEmployee(employee2));
+    }
+
+    @Test
+    public void shouldUpdateMaxSalaryOfferedWhenTheSalaryOfAnEmployeeChanges() {
+        final Department department = new Department();
+        final Employee employee1 = new Employee();
+        final Employee employee2 = new Employee();
+        employee1.setSalary(60000);
+        employee2.setSalary(65000);
+        department.addEmployee(employee1);
+        department.addEmployee(employee2);
+
+        employee1.setSalary(70000);
+        Assert.assertEquals(70000, department.getMaxSalaryOffered());
+
+        employee1.setSalary(50000);
+        Assert.assertEquals(65000, department.getMaxSalaryOffered());
+    }
+
+    @Test
+    public void shouldMaintainTheSalaryStatisticsOfTheDepartment() {
+        final Department department = new Department();
+        final Employee employee1 = new Employee();
+        final Employee employee2 = new Employee();
+        employee1.setSalary(60000);
+        employee2.setSalary(65000);
+        department.addEmployee(employee1);
+        department.addEmployee(employee2);
+
+        employee2.setSalary(70000);
+
+        final SalaryStatistics statistics = department.getSalaryStatistics();
+        Assert.assertEquals(2, statistics.getCount());
+        Assert.assertEquals(130000, statistics.getTotal());
+        Assert.assertEquals(60000, statistics.getMin());
+        Assert.assertEquals(70000, statistics.getMax());
+
+        //The statistics handed out are a copy, later raises do not tear them.
+        employee1.setSalary(90000);
+        Assert.assertEquals(70000, statistics.getMax());
+        Assert.assertEquals(90000, department.getSalaryStatistics().getMax());
+    }
+
+    @Test
+    public void shouldOfferTheHighestSalaryEvenWhenAllSalariesAreNegative() {
+        final Department department = new Department();
+        final Employee employee1 = new Employee();
+        final Employee employee2 = new Employee();
+        employee1.setSalary(-5000);
+        employee2.setSalary(-3000);
+
+        department.addEmployee(employee1);
+        department.addEmployee(employee2);
+
+        //The max must come from the employees, not the initial 0.
+        Assert.assertEquals(-3000, department.getMaxSalaryOffered());
+    }
+
+    @Test
+    public void shouldRefuseAnEmployeeThatAlreadyBelongsToADepartment() {
+        final Department engineering = new Department();
+        final Department sales = new Department();
+        final Employee employee = new Employee();
+        employee.setSalary(60000);
+        engineering.addEmployee(employee);
+
+        try {
+            sales.addEmployee(employee);
+            Assert.fail("An employee joined a second department");
+        } catch (IllegalArgumentException expected) {
+            //Engineering must still hear about salary changes.
+        }
+
+        employee.setSalary(90000);
+        Assert.assertEquals(90000, engineering.getMaxSalaryOffered());
+        Assert.assertEquals(0, sales.getSalaryStatistics().getCount());
+    }
+
+    @Test
+    public void shouldNotLetARaiseRacingARemovalSkewTheStatistics() throws InterruptedException {
+        for (int round = 0; round < 2000; round++) {
+            final Department department = new Department();
+            final Employee staying = new Employee();
+            final Employee leaving = new Employee();
+            staying.setSalary(50000);
+            leaving.setSalary(60000);
+            department.addEmployee(staying);
+            department.addEmployee(leaving);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final Thread raise = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    leaving.setSalary(90000);
+                }
+            });
+            raise.start();
+            start.countDown();
+            department.removeEmployee(leaving);
+            raise.join();
+
+            //Only the employee that stayed is left in the statistics.
+            final SalaryStatistics statistics = department.getSalaryStatistics();
+            Assert.assertEquals(1, statistics.getCount());
+            Assert.assertEquals(50000, statistics.getTotal());
+            Assert.assertEquals(50000, department.getMaxSalaryOffered());
+        }
+    }
+
+    @Test
+    public void shouldRoundTripADepartmentThroughTheBinaryCodec() {
+        final Department department = new Department(7);
+        final Employee employee1 = new Employee("deep@gitshah.com");
+        final Employee employee2 = new Employee("will@gitshah.com");
+        employee1.setEmployeeId(1);
+        employee1.setSalary(60000);
+        employee2.setEmployeeId(2);
+        employee2.setSalary(65000);
+        department.addEmployee(employee1);
+        department.addEmployee(employee2);
+
+        final EmployeeCodec codec = new EmployeeCodec();
+        final ByteBuffer buffer = ByteBuffer.allocate(EmployeeCodec.encodedSize(7, department.employees()));
+        codec.encodeDepartment(department, buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        final List<Employee> employees = new ArrayList<Employee>();
+        Assert.assertEquals(7, codec.decodeDepartment(buffer, employees));
+        Assert.assertEquals(2, employees.size());
+        Assert.assertEquals("will@gitshah.com", employees.get(1).getEmail());
+        Assert.assertEquals(65000, employees.get(1).getSalary());
+    }
 }
@@ -0,0 +1,46 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The class that holds all unit tests for
+ * the EmailBloomFilter class.
+ */
+public class EmailBloomFilterTest {
+
+    @Test
+    public void shouldNeverReportAnAddedEmailAsUnused() {
+        final EmailBloomFilter filter = new EmailBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("employee" + i + "@gitshah.com");
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(filter.mightContain("EMPLOYEE" + i + "@gitshah.com"));
+        }
+    }
+
+    @Test
+    public void shouldKeepFalsePositivesNearTheConfiguredRate() {
+        final EmailBloomFilter filter = new EmailBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("employee" + i + "@gitshah.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("applicant" + i + "@packtpub.com")) {
+                falsePositives++;
+            }
+        }
+
+        //Allowing twice the configured 1% rate for hashing noise.
+        Assert.assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAFalsePositiveRateOfOne() {
+        new EmailBloomFilter(1000, 1.0);
+    }
+}
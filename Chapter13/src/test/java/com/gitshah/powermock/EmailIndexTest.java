@@ -0,0 +1,62 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The class that holds all unit tests for
+ * the EmailIndex class.
+ */
+public class EmailIndexTest {
+
+    @Test
+    public void shouldFindEmployeesRegardlessOfCase() {
+        final EmailIndex index = new EmailIndex();
+        final Employee employee = new Employee("Deep@GitShah.com");
+        index.put(employee);
+
+        Assert.assertSame(employee, index.get("deep@gitshah.com"));
+        Assert.assertSame(employee, index.get(" DEEP@gitshah.COM "));
+        Assert.assertNull(index.get("noreply@packtpub.com"));
+        Assert.assertNull(index.get(null));
+
+        Assert.assertEquals(2, index.getHitCount());
+        Assert.assertEquals(2, index.getMissCount());
+    }
+
+    @Test
+    public void shouldReplaceTheEmployeeIndexedUnderTheSameEmail() {
+        final EmailIndex index = new EmailIndex();
+        final Employee employee = new Employee("deep@gitshah.com");
+        index.put(new Employee("DEEP@gitshah.com"));
+        index.put(employee);
+
+        Assert.assertEquals(1, index.size());
+        Assert.assertSame(employee, index.get("deep@gitshah.com"));
+    }
+
+    @Test
+    public void shouldStillFindEveryOtherEmployeeAfterRemovals() {
+        final EmailIndex index = new EmailIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put(new Employee("employee" + i + "@gitshah.com"));
+        }
+
+        for (int i = 0; i < 1000; i += 2) {
+            Assert.assertNotNull(index.remove("employee" + i + "@gitshah.com"));
+        }
+
+        Assert.assertEquals(500, index.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i % 2 == 1, index.contains("employee" + i + "@gitshah.com"));
+        }
+    }
+
+    @Test
+    public void shouldNotIndexEmployeesWithoutAnEmail() {
+        final EmailIndex index = new EmailIndex();
+        index.put(new Employee());
+
+        Assert.assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,116 @@
+package com.gitshah.powermock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for round tripping a department of 1,000 employees
+ * through EmployeeCodec against Java serialization.
+ * Employee is not Serializable, so the serialization side round trips
+ * a serializable copy holding the same three fields.
+ * Invocations alternate between two departments whose emails differ,
+ * so decoding into the reused instances never gets to skip the email Strings.
+ * Run with: gradle jmh -Pbenchmarks=EmployeeCodec
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmployeeCodecBenchmark {
+
+    private static final int EMPLOYEES = 1000;
+
+    /**
+     * The serializable stand-in for an Employee.
+     */
+    private static final class SerializableEmployee implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int employeeId;
+        private final String email;
+        private final long salary;
+
+        private SerializableEmployee(final Employee employee) {
+            this.employeeId = employee.getEmployeeId();
+            this.email = employee.getEmail();
+            this.salary = employee.getSalary();
+        }
+    }
+
+    private final List<List<Employee>> departments = new ArrayList<List<Employee>>();
+    private final List<ArrayList<SerializableEmployee>> serializableDepartments =
+            new ArrayList<ArrayList<SerializableEmployee>>();
+    private int turn;
+
+    private final EmployeeCodec codec = new EmployeeCodec();
+    private ByteBuffer buffer;
+    private final List<Employee> decoded = new ArrayList<Employee>();
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        int size = 0;
+        for (String prefix : new String[] {"employee", "staff"}) {
+            final List<Employee> employees = new ArrayList<Employee>(EMPLOYEES);
+            final ArrayList<SerializableEmployee> serializableEmployees = new ArrayList<SerializableEmployee>(EMPLOYEES);
+            for (int i = 0; i < EMPLOYEES; i++) {
+                final Employee employee = new Employee(prefix + i + "@gitshah.com");
+                employee.setEmployeeId(i + 1);
+                employee.setSalary(30000 + random.nextInt(100000));
+                employees.add(employee);
+                serializableEmployees.add(new SerializableEmployee(employee));
+            }
+            departments.add(employees);
+            serializableDepartments.add(serializableEmployees);
+            size = Math.max(size, EmployeeCodec.encodedSize(1, employees));
+        }
+        buffer = ByteBuffer.allocate(size);
+    }
+
+    @Benchmark
+    public int codec() {
+        buffer.clear();
+        codec.encodeDepartment(1, departments.get(turn++ & 1), buffer);
+        buffer.flip();
+        codec.decodeDepartment(buffer, decoded);
+        return decoded.size();
+    }
+
+    @Benchmark
+    public int javaSerialization() throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeInt(1);
+        out.writeObject(serializableDepartments.get(turn++ & 1));
+        out.close();
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        in.readInt();
+        final List<?> read = (List<?>) in.readObject();
+        in.close();
+        return read.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class that holds all unit tests for
+ * the EmployeeCodec class.
+ */
+public class EmployeeCodecTest {
+
+    private static Employee employee(final int employeeId, final String email, final long salary) {
+        final Employee employee = new Employee(email);
+        employee.setEmployeeId(employeeId);
+        employee.setSalary(salary);
+        return employee;
+    }
+
+    @Test
+    public void shouldRoundTripEmployeesExactly() {
+        final EmployeeCodec codec = new EmployeeCodec();
+        final List<Employee> employees = Arrays.asList(
+                employee(1, "deep@gitshah.com", 60000),
+                employee(Integer.MAX_VALUE, null, Long.MIN_VALUE),
+                employee(-5, "j\u00fcrgen.\u00e9l\u00e8ve@\u6771\u4eac.jp \ud83d\ude00", -250),
+                employee(0, "", Long.MAX_VALUE));
+
+        for (Employee employee : employees) {
+            for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64)}) {
+                codec.encodeEmployee(employee, buffer);
+                Assert.assertEquals(EmployeeCodec.encodedSize(employee), buffer.position());
+
+                buffer.flip();
+                final Employee decoded = codec.decodeEmployee(buffer, new Employee());
+                Assert.assertFalse(buffer.hasRemaining());
+                Assert.assertEquals(employee.getEmployeeId(), decoded.getEmployeeId());
+                Assert.assertEquals(employee.getEmail(), decoded.getEmail());
+                Assert.assertEquals(employee.getSalary(), decoded.getSalary());
+                Assert.assertFalse(decoded.isDirty());
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepSmallValuesSmall() {
+        //Version, id, email length, 16 email bytes and a three byte salary.
+        Assert.assertEquals(22, EmployeeCodec.encodedSize(employee(1, "deep@gitshah.com", 60000)));
+        //A small negative salary takes a single byte.
+        Assert.assertEquals(4, EmployeeCodec.encodedSize(employee(1, null, -1)));
+    }
+
+    @Test
+    public void shouldDecodeADepartmentIntoTheInstancesAlreadyInTheList() {
+        final EmployeeCodec codec = new EmployeeCodec();
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        codec.encodeDepartment(3, Arrays.asList(
+                employee(1, "deep@gitshah.com", 60000),
+                employee(2, "will@gitshah.com", 65000)), buffer);
+        buffer.flip();
+
+        final Employee reused = new Employee("deep@gitshah.com");
+        final String email = reused.getEmail();
+        final List<Employee> employees = new ArrayList<Employee>();
+        employees.add(reused);
+        employees.add(new Employee());
+        employees.add(new Employee());
+
+        Assert.assertEquals(3, codec.decodeDepartment(buffer, employees));
+        Assert.assertEquals(2, employees.size());
+        Assert.assertSame(reused, employees.get(0));
+        //The matching email was not decoded again.
+        Assert.assertSame(email, reused.getEmail());
+        Assert.assertEquals(60000, reused.getSalary());
+        Assert.assertEquals("will@gitshah.com", employees.get(1).getEmail());
+    }
+
+    @Test
+    public void shouldRejectAnUnsupportedVersion() {
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        new EmployeeCodec().encodeEmployee(employee(1, "deep@gitshah.com", 60000), buffer);
+        buffer.put(0, (byte) (EmployeeCodec.VERSION + 1));
+        buffer.flip();
+        try {
+            new EmployeeCodec().decodeEmployee(buffer, new Employee());
+            Assert.fail("A newer version cannot be decoded");
+        } catch (IllegalArgumentException expected) {
+            //Expected.
+        }
+    }
+}
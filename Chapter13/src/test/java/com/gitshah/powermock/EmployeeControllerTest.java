@@ -190,4 +190,16 @@ public class EmployeeControllerTest {
         final EmployeeController employeeController = new EmployeeController(mock);
         Assert.assertTrue(employeeController.isEmployeeEmailAlreadyTaken(employeeEmail));
     }
+
+    @Test
+    public void shouldNotLookUpAnEmailTheBloomFilterKnowsToBeUnused() {
+        final EmployeeService mock = PowerMockito.mock(EmployeeService.class);
+        PowerMockito.when(mock.isEmailCertainlyUnused("packt@gitshah.com")).thenReturn(true);
+
+        final EmployeeController employeeController = new EmployeeController(mock);
+        Assert.assertFalse(employeeController.isEmployeeEmailAlreadyTaken("packt@gitshah.com"));
+
+        //The negative answer came from the Bloom filter alone.
+        Mockito.verify(mock, Mockito.never()).employeeExists(Mockito.any(Employee.class));
+    }
 }
@@ -0,0 +1,78 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class that holds all unit tests for
+ * the EmployeeCounter class.
+ */
+public class EmployeeCounterTest {
+
+    private final AtomicLong stored = new AtomicLong();
+
+    private final EmployeeCountSource source = new EmployeeCountSource() {
+        @Override
+        public long count() {
+            return stored.get();
+        }
+    };
+
+    @Test
+    public void shouldCountConcurrentCreatesAndDeletes() throws InterruptedException {
+        final EmployeeCounter counter = new EmployeeCounter(source);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment();
+                        if (j % 2 == 0) {
+                            counter.decrement();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(20000, counter.get());
+    }
+
+    @Test
+    public void shouldCorrectDriftWhenReconciled() {
+        final EmployeeCounter counter = new EmployeeCounter(source);
+        stored.set(900);
+        Assert.assertEquals(900, counter.reconcile());
+        counter.increment();
+
+        //Two employees were deleted behind the counter's back.
+        stored.set(899);
+        Assert.assertEquals(-2, counter.reconcile());
+        Assert.assertEquals(899, counter.get());
+        Assert.assertEquals(-2, counter.getLastDrift());
+    }
+
+    @Test
+    public void shouldReconcileInTheBackground() throws InterruptedException {
+        final EmployeeCounter counter = new EmployeeCounter(source);
+        stored.set(42);
+        counter.startReconciliation(10, TimeUnit.MILLISECONDS);
+        try {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (counter.get() != 42 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(42, counter.get());
+        } finally {
+            counter.close();
+        }
+    }
+}
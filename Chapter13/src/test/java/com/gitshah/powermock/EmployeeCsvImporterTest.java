@@ -0,0 +1,198 @@
+package com.gitshah.powermock;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class that holds all unit tests for
+ * the EmployeeCsvImporter class.
+ */
+public class EmployeeCsvImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void stopTheExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A service that records the employees it is asked to save.
+     */
+    private static class RecordingEmployeeService extends EmployeeService {
+
+        final List<Employee> saved = Collections.synchronizedList(new ArrayList<Employee>());
+        final AtomicInteger largestBatch = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger mostInFlight = new AtomicInteger();
+
+        @Override
+        public BatchSaveReport saveEmployees(Collection<Employee> employees) {
+            final int current = inFlight.addAndGet(employees.size());
+            if (current > mostInFlight.get()) {
+                mostInFlight.set(current);
+            }
+            if (employees.size() > largestBatch.get()) {
+                largestBatch.set(employees.size());
+            }
+            final BatchSaveReport report = new BatchSaveReport();
+            for (Employee employee : employees) {
+                saved.add(employee);
+                report.created();
+            }
+            inFlight.addAndGet(-employees.size());
+            return report;
+        }
+    }
+
+    private Path write(final String content) throws IOException {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test
+    public void shouldStreamAFileLargerThanTheBufferInBoundedBatches() throws IOException {
+        final StringBuilder csv = new StringBuilder(EmployeeCsvImporter.SHORT_HEADER).append("\r\n");
+        for (int i = 0; i < 20000; i++) {
+            csv.append("employee").append(i).append("@gitshah.com,").append(30000 + i).append("\r\n");
+        }
+        final RecordingEmployeeService service = new RecordingEmployeeService();
+        final AtomicInteger progressed = new AtomicInteger();
+
+        final CsvImportReport report = new EmployeeCsvImporter(service, executor, 500, 2000,
+                new CsvImportProgressListener() {
+                    @Override
+                    public void progressed(CsvImportReport report) {
+                        progressed.incrementAndGet();
+                    }
+                }).importFrom(write(csv.toString()));
+
+        Assert.assertTrue(report.isFinished());
+        Assert.assertEquals(20000, report.getCreatedCount());
+        Assert.assertEquals(20000, report.getRowCount());
+        Assert.assertEquals(0, report.getRejectedCount());
+        Assert.assertEquals(report.getTotalBytes(), report.getSavedBytes());
+        Assert.assertEquals(0, report.getEstimatedRemainingMillis());
+        Assert.assertTrue(report.getRowsPerSecond() > 0);
+        Assert.assertEquals(40, progressed.get());
+
+        Assert.assertEquals(20000, service.saved.size());
+        Assert.assertEquals(500, service.largestBatch.get());
+        Assert.assertTrue(service.mostInFlight.get() <= 2000);
+        final Employee last = service.saved.get(service.saved.size() - 1);
+        Assert.assertTrue(last.getEmail().endsWith("@gitshah.com"));
+    }
+
+    @Test
+    public void shouldRejectInvalidRowsAndImportTheRest() throws IOException {
+        final RecordingEmployeeService service = new RecordingEmployeeService();
+        final CsvImportReport report = new EmployeeCsvImporter(service, executor, 10, 10, null).importFrom(write(
+                EmployeeCsvImporter.HEADER + "\n"
+                        + "1,deep@gitshah.com,60000\n"
+                        + "\n"
+                        + "0,will@gitshah.com,65000\n"
+                        + "x,packt@gitshah.com,70000\n"
+                        + "0,no-at-sign,70000\n"
+                        + "0,packt@gitshah.com,-5\n"
+                        + "0,packt@gitshah.com\n"
+                        + "0,packt@gitshah.com,70000"));
+
+        Assert.assertEquals(3, report.getCreatedCount());
+        Assert.assertEquals(4, report.getRejectedCount());
+        Assert.assertEquals("Invalid employeeId", report.getRejections().get(5L));
+        Assert.assertEquals("Invalid email", report.getRejections().get(6L));
+        Assert.assertEquals("Invalid salary", report.getRejections().get(7L));
+        Assert.assertEquals("Expected 3 fields", report.getRejections().get(8L));
+        //The last line has no line break.
+        Assert.assertEquals(3, service.saved.size());
+        Assert.assertEquals(1, service.saved.get(0).getEmployeeId());
+        Assert.assertEquals(70000, service.saved.get(2).getSalary());
+    }
+
+    @Test
+    public void shouldMoveAnExistingEmployeeToTheEmailOfItsRow() throws IOException {
+        final LogEmployeeRepository repository = Mockito.spy(
+                new LogEmployeeRepository(folder.getRoot().toPath().resolve("employees")));
+        Employee.useRepository(repository);
+        try {
+            final Employee will = new Employee("will@gitshah.com");
+            will.setEmployeeId(2);
+            will.setSalary(65000);
+            will.save();
+            //Finding the employee puts it in the email index of the service.
+            final EmployeeService service = new EmployeeService();
+            Assert.assertEquals(2, service.findEmployeeByEmail("will@gitshah.com").getEmployeeId());
+
+            final CsvImportReport report = new EmployeeCsvImporter(service, executor, 10, 10, null).importFrom(
+                    write(EmployeeCsvImporter.HEADER + "\n2,will.gilbert@gitshah.com,70000\n"));
+
+            Assert.assertEquals(1, report.getUpdatedCount());
+            Mockito.verify(repository).update(Mockito.any(Employee.class),
+                    Mockito.eq(Employee.EMPLOYEE_ID | Employee.EMAIL | Employee.SALARY));
+            Assert.assertEquals(70000, service.findEmployeeByEmail("will.gilbert@gitshah.com").getSalary());
+            Assert.assertNull(service.findEmployeeByEmail("will@gitshah.com"));
+        } finally {
+            Employee.useRepository(null);
+            repository.close();
+        }
+    }
+
+    @Test
+    public void shouldReportTheEmployeesOfABatchThatFailedToSave() throws IOException {
+        final EmployeeService service = new EmployeeService() {
+            @Override
+            public BatchSaveReport saveEmployees(Collection<Employee> employees) {
+                throw new IllegalStateException("DB is down");
+            }
+        };
+        final CsvImportReport report = new EmployeeCsvImporter(service, executor, 10, 10, null).importFrom(
+                write(EmployeeCsvImporter.SHORT_HEADER + "\ndeep@gitshah.com,60000\nwill@gitshah.com,65000\n"));
+
+        Assert.assertEquals(2, report.getFailureCount());
+        Assert.assertEquals("DB is down", report.getFailures().values().iterator().next().getMessage());
+    }
+
+    @Test
+    public void shouldOnlyCountTheSavedPrefixWhenBatchesFinishOutOfOrder() {
+        final CsvImportReport report = new CsvImportReport(400);
+
+        // The last batch finishing first saves nothing of the file yet
+        report.batchSaved(new BatchSaveReport(), 300, 400);
+        Assert.assertEquals(0, report.getSavedBytes());
+
+        report.batchSaved(new BatchSaveReport(), 0, 100);
+        Assert.assertEquals(100, report.getSavedBytes());
+
+        // A failed batch still closes the gap up to the batch saved ahead
+        report.batchFailed(Collections.<Employee>emptyList(), new IllegalStateException("DB is down"), 200, 300);
+        Assert.assertEquals(100, report.getSavedBytes());
+        report.batchSaved(new BatchSaveReport(), 100, 200);
+        Assert.assertEquals(400, report.getSavedBytes());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRefuseAFileWithAnUnknownHeader() throws IOException {
+        new EmployeeCsvImporter(new RecordingEmployeeService(), executor, 10, 10, null)
+                .importFrom(write("name,salary\nDeep,60000\n"));
+    }
+}
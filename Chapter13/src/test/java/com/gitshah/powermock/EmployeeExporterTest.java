@@ -0,0 +1,276 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.MockPolicy;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The class that holds all unit tests for
+ * the EmployeeExporter class.
+ */
+@RunWith(PowerMockRunner.class)
+@MockPolicy(DepartmentMockPolicy.class)
+public class EmployeeExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Department department(final int departmentId, final int firstEmployeeId, final int size) {
+        final Department department = new Department(departmentId);
+        for (int i = 0; i < size; i++) {
+            final Employee employee = new Employee("employee" + (firstEmployeeId + i) + "@gitshah.com");
+            employee.setEmployeeId(firstEmployeeId + i);
+            employee.setSalary(30000 + i);
+            department.addEmployee(employee);
+        }
+        return department;
+    }
+
+    private static FileChannel create(final Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static List<Department> departments() {
+        final List<Department> departments = new ArrayList<Department>();
+        for (int i = 1; i <= 10; i++) {
+            departments.add(department(i, i * 10000, 1000));
+        }
+        return departments;
+    }
+
+    /**
+     * A channel to a file whose disk fills up after the given number
+     * of bytes, part way through a write.
+     */
+    private static WritableByteChannel fillingUp(final FileChannel file, final long capacity) {
+        return new WritableByteChannel() {
+            private long written;
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                if (written == capacity) {
+                    throw new IOException("No space left on device");
+                }
+                final int limit = source.limit();
+                source.limit(source.position() + (int) Math.min(source.remaining(), capacity - written));
+                final int count = file.write(source);
+                source.limit(limit);
+                written += count;
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return file.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                file.close();
+            }
+        };
+    }
+
+    /**
+     * Fails an export part way through and resumes it after cutting
+     * the file back to the last whole department.
+     */
+    private static void exportAndResume(final Path path, final EmployeeExporter.Format format,
+                                        final long capacity) throws IOException {
+        final List<Department> departments = departments();
+        final FileChannel file = create(path);
+        final EmployeeExporter failing = new EmployeeExporter(fillingUp(file, capacity), format, false);
+        try {
+            failing.export(departments, EmployeeExporter.FROM_START);
+            Assert.fail("The disk filled up");
+        } catch (IOException expected) {
+            //Expected.
+        }
+        final int lastDepartmentId = failing.getLastDepartmentId();
+        Assert.assertTrue(lastDepartmentId > 0 && lastDepartmentId < 10);
+        Assert.assertEquals(capacity, file.size());
+        Assert.assertTrue(failing.getLastOffset() < capacity);
+        EmployeeExporter.truncate(file, failing.getLastOffset());
+        file.close();
+
+        final EmployeeExporter resumed = new EmployeeExporter(
+                FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND), format, false);
+        resumed.export(departments, lastDepartmentId);
+        resumed.close();
+    }
+
+    private static byte[] gunzip(final Path path) throws IOException {
+        final InputStream in = new GZIPInputStream(Files.newInputStream(path));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[8192];
+        try {
+            for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+                bytes.write(chunk, 0, read);
+            }
+        } catch (EOFException unfinished) {
+            //A gzip stream that was not finished yet ends abruptly.
+        } finally {
+            in.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void shouldExportDepartmentsInIdOrderAsCsv() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.csv");
+        final EmployeeExporter exporter = new EmployeeExporter(create(path), EmployeeExporter.Format.CSV, false);
+        Assert.assertEquals(3, exporter.export(Arrays.asList(department(2, 10, 1), department(1, 1, 2)),
+                EmployeeExporter.FROM_START));
+        exporter.close();
+
+        Assert.assertEquals(Arrays.asList(EmployeeCsvImporter.HEADER,
+                "1,employee1@gitshah.com,30000",
+                "2,employee2@gitshah.com,30001",
+                "10,employee10@gitshah.com,30000"),
+                Files.readAllLines(path, StandardCharsets.UTF_8));
+        Assert.assertEquals(2, exporter.getLastDepartmentId());
+    }
+
+    @Test
+    public void shouldMakeRoomForTheLongestCsvRows() throws IOException {
+        //A 30 byte row puts the 34 byte rows after it 32 bytes short of the end of the buffer.
+        final List<Employee> employees = new ArrayList<Employee>();
+        for (int i = 0; i < 3000; i++) {
+            final Employee employee = new Employee();
+            employee.setEmployeeId(Integer.MIN_VALUE);
+            employee.setSalary(i == 0 ? 1000000000000000L : Long.MIN_VALUE);
+            employees.add(employee);
+        }
+        final Path path = folder.getRoot().toPath().resolve("employees.csv");
+        final EmployeeExporter exporter = new EmployeeExporter(create(path), EmployeeExporter.Format.CSV, false);
+        exporter.exportDepartment(1, employees);
+        exporter.close();
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        Assert.assertEquals(3001, lines.size());
+        Assert.assertEquals("-2147483648,,-9223372036854775808", lines.get(3000));
+    }
+
+    @Test
+    public void shouldExportGzippedDepartmentMessages() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.bin.gz");
+        final EmployeeExporter exporter = new EmployeeExporter(create(path), EmployeeExporter.Format.BINARY, true);
+        exporter.export(Arrays.asList(department(1, 1, 3000), department(2, 5000, 5)), EmployeeExporter.FROM_START);
+        exporter.close();
+
+        final ByteBuffer buffer = ByteBuffer.wrap(gunzip(path));
+        final EmployeeCodec codec = new EmployeeCodec();
+        final List<Employee> employees = new ArrayList<Employee>();
+        Assert.assertEquals(1, codec.decodeDepartment(buffer, employees));
+        Assert.assertEquals(3000, employees.size());
+        Assert.assertEquals("employee3000@gitshah.com", employees.get(2999).getEmail());
+        Assert.assertEquals(2, codec.decodeDepartment(buffer, employees));
+        Assert.assertEquals(5, employees.size());
+        Assert.assertEquals(5004, employees.get(4).getEmployeeId());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void shouldResumeAFailedExportFromTheLastCompleteDepartment() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.csv");
+        //The disk fills up after 150KB, at the end of a row.
+        final long capacity = 150 * 1024 - 1;
+        exportAndResume(path, EmployeeExporter.Format.CSV, capacity);
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        Assert.assertEquals(EmployeeCsvImporter.HEADER, lines.get(0));
+        final Set<String> rows = new HashSet<String>(lines.subList(1, lines.size()));
+        Assert.assertFalse(rows.contains(EmployeeCsvImporter.HEADER));
+        Assert.assertEquals(10000, rows.size());
+        Assert.assertEquals(10001, lines.size());
+    }
+
+    @Test
+    public void shouldDropTheRowTornByAFailureWhenResuming() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.csv");
+        //The disk fills up in the middle of a row.
+        exportAndResume(path, EmployeeExporter.Format.CSV, 150 * 1024 + 7);
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        Assert.assertEquals(10001, lines.size());
+        for (String row : lines.subList(1, lines.size())) {
+            Assert.assertTrue(row, row.matches("\\d+,employee\\d+@gitshah\\.com,\\d+"));
+        }
+        Assert.assertEquals(10000, new HashSet<String>(lines.subList(1, lines.size())).size());
+    }
+
+    @Test
+    public void shouldResumeAFailedBinaryExportOnAWholeDepartmentMessage() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.bin");
+        exportAndResume(path, EmployeeExporter.Format.BINARY, 100 * 1024 + 3);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        final EmployeeCodec codec = new EmployeeCodec();
+        final List<Employee> employees = new ArrayList<Employee>();
+        for (int departmentId = 1; departmentId <= 10; departmentId++) {
+            Assert.assertEquals(departmentId, codec.decodeDepartment(buffer, employees));
+            Assert.assertEquals(1000, employees.size());
+            Assert.assertEquals(departmentId * 10000 + 999, employees.get(999).getEmployeeId());
+        }
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void shouldGetFlushedDepartmentsThroughTheGzipStream() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.csv.gz");
+        final EmployeeExporter exporter = new EmployeeExporter(create(path), EmployeeExporter.Format.CSV, true);
+        exporter.export(Arrays.asList(department(1, 1, 3), department(2, 10, 2)), EmployeeExporter.FROM_START);
+        exporter.flush();
+
+        //The department checkpointed can be read back before the gzip stream is finished.
+        Assert.assertEquals(2, exporter.getLastDepartmentId());
+        final String csv = new String(gunzip(path), StandardCharsets.UTF_8);
+        Assert.assertEquals(exporter.getLastOffset(), csv.length());
+        Assert.assertTrue(csv, csv.endsWith("11,employee11@gitshah.com,30001\n"));
+        exporter.close();
+    }
+
+    @Test
+    public void shouldExportTheSalaryStatisticsOfEveryDepartment() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.csv");
+        final Path statisticsPath = folder.getRoot().toPath().resolve("statistics.csv");
+        final EmployeeExporter exporter = new EmployeeExporter(create(path), EmployeeExporter.Format.CSV, false);
+        exporter.useStatisticsOutput(create(statisticsPath));
+        final Department department = department(1, 1, 3);
+        exporter.export(Arrays.asList(department, department(2, 10, 0)), EmployeeExporter.FROM_START);
+        exporter.close();
+
+        //Percentiles are the same estimates the department keeps.
+        final SalaryStatistics statistics = department.getSalaryStatistics();
+        Assert.assertEquals(Arrays.asList(EmployeeExporter.STATISTICS_HEADER,
+                "1,3,90003,30000,30002," + statistics.getMedian() + "," + statistics.getP90()
+                        + "," + statistics.getPercentile(99),
+                "2,0,0,0,0,0,0,0"),
+                Files.readAllLines(statisticsPath, StandardCharsets.UTF_8));
+        Assert.assertEquals(Files.size(statisticsPath), exporter.getLastStatisticsOffset());
+        //The employee output stays importable.
+        Assert.assertEquals(4, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+    }
+}
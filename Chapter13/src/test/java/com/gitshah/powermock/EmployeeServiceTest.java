@@ -11,6 +11,9 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.exceptions.TooManyMethodsFoundException;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The class that holds all unit tests for
@@ -191,6 +194,30 @@ public class EmployeeServiceTest {
         Mockito.verify(welcomeEmailMock).send();
     }
 
+    @Test
+    public void shouldBorrowTheConnectionOfAnInlineWelcomeEmailFromThePool() throws Exception {
+        Employee employeeMock = PowerMockito.mock(Employee.class);
+        PowerMockito.when(employeeMock.isNew()).thenReturn(true);
+
+        PowerMockito.mockStatic(EmployeeIdGenerator.class);
+
+        //No connection is opened until the first borrow.
+        final SmtpConnectionPool pool = new SmtpConnectionPool("localhost", 25, 1, 60000, 1000);
+        WelcomeEmail welcomeEmailMock = PowerMockito.mock(WelcomeEmail.class);
+        PowerMockito.whenNew(WelcomeEmail.class)
+                .withArguments(employeeMock, "Welcome to Mocking with PowerMock How-to!", pool)
+                .thenReturn(welcomeEmailMock);
+
+        EmployeeService employeeService = new EmployeeService();
+        employeeService.useSmtpConnectionPool(pool);
+        employeeService.saveEmployee(employeeMock);
+
+        PowerMockito
+                .verifyNew(WelcomeEmail.class)
+                .withArguments(employeeMock, "Welcome to Mocking with PowerMock How-to!", pool);
+        Mockito.verify(welcomeEmailMock).send();
+    }
+
     @Test
     public void shouldInvokeThePrivateCreateEmployeeMethodWhileSavingANewEmployee() throws Exception {
         final EmployeeService spy = PowerMockito.spy(new EmployeeService());
@@ -232,4 +259,227 @@ public class EmployeeServiceTest {
         //using the same method instance we found earlier.
         PowerMockito.verifyPrivate(spy).invoke(createEmployeeMethod).withArguments(employeeMock);
     }
+
+    @Test
+    public void shouldReserveIdsForAllNewEmployeesInOneCallWhenSavingABatch() throws Exception {
+        final Employee newEmployee1 = PowerMockito.mock(Employee.class);
+        final Employee newEmployee2 = PowerMockito.mock(Employee.class);
+        final Employee existingEmployee = PowerMockito.mock(Employee.class);
+        PowerMockito.when(newEmployee1.isNew()).thenReturn(true);
+        PowerMockito.when(newEmployee2.isNew()).thenReturn(true);
+        PowerMockito.when(existingEmployee.isNew()).thenReturn(false);
+
+        PowerMockito.mockStatic(EmployeeIdGenerator.class);
+        PowerMockito.when(EmployeeIdGenerator.getNextIds(2)).thenReturn(500);
+
+        WelcomeEmail welcomeEmailMock = PowerMockito.mock(WelcomeEmail.class);
+        PowerMockito.whenNew(WelcomeEmail.class).withAnyArguments().thenReturn(welcomeEmailMock);
+
+        EmployeeService employeeService = new EmployeeService();
+        BatchSaveReport report = employeeService.saveEmployees(
+                Arrays.asList(newEmployee1, existingEmployee, newEmployee2));
+
+        //Both ids came from a single reservation.
+        PowerMockito.verifyStatic(EmployeeIdGenerator.class);
+        EmployeeIdGenerator.getNextIds(2);
+        Mockito.verify(newEmployee1).setEmployeeId(500);
+        Mockito.verify(newEmployee2).setEmployeeId(501);
+
+        Mockito.verify(newEmployee1).create();
+        Mockito.verify(newEmployee2).create();
+        Mockito.verify(existingEmployee).update();
+        Mockito.verify(welcomeEmailMock, Mockito.times(2)).send();
+
+        Assert.assertEquals(2, report.getCreatedCount());
+        Assert.assertEquals(1, report.getUpdatedCount());
+        Assert.assertEquals(0, report.getFailureCount());
+    }
+
+    @Test
+    public void shouldCountAnEmployeeAsCreatedEvenIfItsWelcomeEmailFails() throws Exception {
+        final Employee newEmployee = PowerMockito.mock(Employee.class);
+        PowerMockito.when(newEmployee.isNew()).thenReturn(true);
+        PowerMockito.when(newEmployee.getEmail()).thenReturn("deep@gitshah.com");
+        PowerMockito.mockStatic(EmployeeIdGenerator.class);
+        PowerMockito.when(EmployeeIdGenerator.getNextIds(1)).thenReturn(500);
+
+        final IllegalStateException failure = new IllegalStateException("SMTP is down");
+        WelcomeEmail welcomeEmailMock = PowerMockito.mock(WelcomeEmail.class);
+        PowerMockito.doThrow(failure).when(welcomeEmailMock).send();
+        PowerMockito.whenNew(WelcomeEmail.class).withAnyArguments().thenReturn(welcomeEmailMock);
+
+        EmployeeService employeeService = new EmployeeService();
+        BatchSaveReport report = employeeService.saveEmployees(Arrays.asList(newEmployee));
+
+        //The employee was persisted, only its welcome failed.
+        Assert.assertEquals(1, report.getCreatedCount());
+        Assert.assertEquals(0, report.getFailureCount());
+        Assert.assertSame(failure, report.getWelcomeEmailFailures().get(newEmployee));
+        Assert.assertSame(newEmployee, employeeService.findEmployeeByEmail("deep@gitshah.com"));
+    }
+
+    @Test
+    public void shouldReportEmployeesThatFailedToSaveAndCarryOnWithTheBatch() {
+        final Employee failingEmployee = PowerMockito.mock(Employee.class);
+        final Employee existingEmployee = PowerMockito.mock(Employee.class);
+        final IllegalStateException failure = new IllegalStateException();
+        PowerMockito.when(failingEmployee.isNew()).thenReturn(false);
+        PowerMockito.doThrow(failure).when(failingEmployee).update();
+        PowerMockito.when(existingEmployee.isNew()).thenReturn(false);
+
+        EmployeeService employeeService = new EmployeeService();
+        BatchSaveReport report = employeeService.saveEmployees(Arrays.asList(failingEmployee, existingEmployee));
+
+        Mockito.verify(existingEmployee).update();
+        Assert.assertEquals(1, report.getUpdatedCount());
+        Assert.assertEquals(1, report.getFailureCount());
+        Assert.assertSame(failure, report.getFailures().get(failingEmployee));
+    }
+
+    @Test
+    public void shouldFindASavedEmployeeByEmailFromTheIndex() {
+        Employee mock = PowerMockito.mock(Employee.class);
+        PowerMockito.when(mock.isNew()).thenReturn(false);
+        PowerMockito.when(mock.getEmail()).thenReturn("deep@gitshah.com");
+
+        EmployeeService employeeService = new EmployeeService();
+        Assert.assertNull(employeeService.findEmployeeByEmail("deep@gitshah.com"));
+
+        employeeService.saveEmployee(mock);
+
+        Assert.assertSame(mock, employeeService.findEmployeeByEmail("Deep@GitShah.com"));
+        Assert.assertEquals(1, employeeService.getEmailIndex().getHitCount());
+        Assert.assertEquals(1, employeeService.getEmailIndex().getMissCount());
+    }
+
+    @Test
+    public void shouldKnowAnEmailIsUnusedUntilAnEmployeeIsSavedWithIt() {
+        Employee mock = PowerMockito.mock(Employee.class);
+        PowerMockito.when(mock.isNew()).thenReturn(false);
+        PowerMockito.when(mock.getEmail()).thenReturn("deep@gitshah.com");
+
+        EmployeeService employeeService = new EmployeeService();
+        Assert.assertTrue(employeeService.isEmailCertainlyUnused("deep@gitshah.com"));
+        Assert.assertFalse(employeeService.employeeExists(new Employee("deep@gitshah.com")));
+
+        employeeService.saveEmployee(mock);
+
+        Assert.assertFalse(employeeService.isEmailCertainlyUnused("deep@gitshah.com"));
+        Assert.assertTrue(employeeService.employeeExists(new Employee("DEEP@gitshah.com")));
+
+        //Resizing the filter keeps the emails saved so far.
+        employeeService.useEmailBloomFilter(1000000, 0.001);
+        Assert.assertFalse(employeeService.isEmailCertainlyUnused("deep@gitshah.com"));
+    }
+
+    @Test
+    public void shouldPassEveryPublicMethodOfTheServiceThroughTheCachingService() {
+        for (Method method : EmployeeService.class.getDeclaredMethods()) {
+            if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            //Anything not overridden would run against the unused inherited state.
+            try {
+                CachingEmployeeService.class.getDeclaredMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                Assert.fail("CachingEmployeeService does not override " + method);
+            }
+        }
+    }
+
+    @Test
+    public void shouldServeRepeatedLookupsFromTheCacheUntilTheEmployeeIsSaved() {
+        Employee mock = PowerMockito.mock(Employee.class);
+        PowerMockito.when(mock.isNew()).thenReturn(false);
+        PowerMockito.when(mock.getEmail()).thenReturn("deep@gitshah.com");
+        EmployeeService delegate = Mockito.spy(new EmployeeService());
+
+        CachingEmployeeService employeeService = new CachingEmployeeService(delegate, 100, 1, TimeUnit.MINUTES);
+        Assert.assertNull(employeeService.findEmployeeByEmail("deep@gitshah.com"));
+        Assert.assertNull(employeeService.findEmployeeByEmail("Deep@GitShah.com"));
+        Mockito.verify(delegate, Mockito.times(1)).findEmployeeByEmail("deep@gitshah.com");
+
+        //Saving drops the cached miss.
+        employeeService.saveEmployee(mock);
+        Assert.assertSame(mock, employeeService.findEmployeeByEmail("deep@gitshah.com"));
+        Assert.assertTrue(employeeService.employeeExists(new Employee("deep@gitshah.com")));
+        Mockito.verify(delegate, Mockito.times(2)).findEmployeeByEmail("deep@gitshah.com");
+
+        Assert.assertEquals(2, employeeService.getCache().getHitCount());
+        Assert.assertEquals(2, employeeService.getCache().getMissCount());
+    }
+
+    @Test
+    public void shouldDropCachedLookupsWhenAnEmployeeIsUpdatedDirectly() {
+        EmployeeService delegate = Mockito.spy(new EmployeeService());
+        CachingEmployeeService employeeService = new CachingEmployeeService(delegate, 100, 1, TimeUnit.MINUTES);
+        Employee.useRepository(employeeService.invalidatingRepository(Mockito.mock(EmployeeRepository.class)));
+        try {
+            Assert.assertNull(employeeService.findEmployeeByEmail("will@gitshah.com"));
+            Assert.assertNull(employeeService.findEmployeeByEmail("deep@gitshah.com"));
+
+            final Employee employee = new Employee("deep@gitshah.com");
+            employee.setEmployeeId(1);
+            employee.markClean();
+            employee.setEmail("will@gitshah.com");
+            employee.update();
+
+            //Both of its emails are looked up again.
+            employeeService.findEmployeeByEmail("will@gitshah.com");
+            employeeService.findEmployeeByEmail("deep@gitshah.com");
+            Mockito.verify(delegate, Mockito.times(2)).findEmployeeByEmail("will@gitshah.com");
+            Mockito.verify(delegate, Mockito.times(2)).findEmployeeByEmail("deep@gitshah.com");
+        } finally {
+            Employee.useRepository(null);
+        }
+    }
+
+    @Test
+    public void shouldServeTheEmployeeCountFromMemoryOnceACounterIsInUse() throws Exception {
+        PowerMockito.mockStatic(Employee.class);
+        PowerMockito.when(Employee.count()).thenReturn(900);
+        PowerMockito.mockStatic(EmployeeIdGenerator.class);
+        PowerMockito.whenNew(WelcomeEmail.class).withAnyArguments().thenReturn(PowerMockito.mock(WelcomeEmail.class));
+        Employee employeeMock = PowerMockito.mock(Employee.class);
+        PowerMockito.when(employeeMock.isNew()).thenReturn(true);
+        PowerMockito.when(employeeMock.delete()).thenReturn(true, false);
+
+        EmployeeService employeeService = new EmployeeService();
+        employeeService.useEmployeeCounter(new EmployeeCounter(EmployeeCountSource.STORE));
+        employeeService.saveEmployee(employeeMock);
+        Assert.assertEquals(901, employeeService.getEmployeeCount());
+
+        employeeService.deleteEmployee(employeeMock);
+        Assert.assertEquals(900, employeeService.getEmployeeCount());
+
+        //Deleting an employee the DB no longer has leaves the count alone.
+        employeeService.deleteEmployee(employeeMock);
+        Assert.assertEquals(900, employeeService.getEmployeeCount());
+
+        //The DB was only counted once, to seed the counter.
+        PowerMockito.verifyStatic(Employee.class, Mockito.times(1));
+        Employee.count();
+    }
+
+    @Test
+    public void shouldMoveAnEmployeeInTheIndexWhenItsEmailChanges() {
+        Employee employee = new Employee("deep@gitshah.com") {
+            @Override
+            public boolean isNew() {
+                return false;
+            }
+
+            @Override
+            protected void updateFields(int fields) {
+            }
+        };
+
+        EmployeeService employeeService = new EmployeeService();
+        employeeService.saveEmployee(employee);
+        employee.setEmail("deep.shah@gitshah.com");
+        employeeService.saveEmployee(employee);
+
+        Assert.assertNull(employeeService.findEmployeeByEmail("deep@gitshah.com"));
+        Assert.assertSame(employee, employeeService.findEmployeeByEmail("deep.shah@gitshah.com"));
+    }
 }
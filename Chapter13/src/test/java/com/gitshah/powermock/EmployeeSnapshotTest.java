@@ -0,0 +1,171 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class that holds all unit tests for
+ * the EmployeeSnapshot class.
+ */
+public class EmployeeSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldFindEveryEmployeeByEmailIgnoringCase() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.snapshot");
+        final List<EmployeeRecord> records = new ArrayList<EmployeeRecord>();
+        for (int i = 1000; i > 0; i--) {
+            records.add(new EmployeeRecord(i, "Employee" + i + "@gitshah.com", i * 100L));
+        }
+        records.add(new EmployeeRecord(1001, null, 500));
+        EmployeeSnapshot.write(path, records);
+
+        final EmployeeSnapshot snapshot = EmployeeSnapshot.open(path);
+        Assert.assertEquals(1001, snapshot.count());
+        for (int i = 1; i <= 1000; i++) {
+            final Employee employee = snapshot.findByEmail(" employee" + i + "@GITSHAH.com");
+            Assert.assertEquals(i, employee.getEmployeeId());
+            Assert.assertEquals("Employee" + i + "@gitshah.com", employee.getEmail());
+            Assert.assertEquals(i * 100L, employee.getSalary());
+            Assert.assertFalse(employee.isDirty());
+        }
+        Assert.assertNull(snapshot.findByEmail("employee0@gitshah.com"));
+        Assert.assertNull(snapshot.findByEmail(null));
+        Assert.assertNull(snapshot.getRecord(1000).getEmail());
+        snapshot.close();
+    }
+
+    @Test
+    public void shouldRejectAFileThatIsNotASnapshot() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.snapshot");
+        Files.write(path, new byte[64]);
+        try {
+            EmployeeSnapshot.open(path);
+            Assert.fail("A zeroed file is not a snapshot");
+        } catch (IOException expected) {
+            //Expected.
+        }
+    }
+
+    @Test
+    public void shouldRejectAHeaderWhoseCountsWrapAround() throws IOException {
+        //A negative count puts the index inside the header.
+        assertCorruptHeader(-1, 0, 8, 8);
+        //16 * 2^28 wraps around to 0 in an int.
+        assertCorruptHeader(1 << 28, 0, 24, 24);
+    }
+
+    private void assertCorruptHeader(final int count, final int indexCount, final int indexOffset,
+                                     final int heapOffset) throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.snapshot");
+        final ByteBuffer header = ByteBuffer.allocate(64);
+        header.putInt(0x45534D50).putInt(1).putInt(count).putInt(indexCount).putInt(indexOffset).putInt(heapOffset);
+        Files.write(path, header.array());
+        try {
+            EmployeeSnapshot.open(path);
+            Assert.fail("The header of " + count + " employees is corrupt");
+        } catch (IOException expected) {
+            Assert.assertEquals("Corrupt employee snapshot header", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldExportTheLiveEmployeesOfARepository() throws IOException {
+        final LogEmployeeRepository repository = new LogEmployeeRepository(folder.newFolder("log").toPath());
+        final Employee deep = new Employee("deep@gitshah.com");
+        deep.setEmployeeId(1);
+        repository.create(deep);
+        final Employee will = new Employee("will@gitshah.com");
+        will.setEmployeeId(2);
+        repository.create(will);
+        repository.delete(will);
+
+        final Path path = folder.getRoot().toPath().resolve("employees.snapshot");
+        repository.exportSnapshot(path);
+        repository.close();
+
+        final EmployeeSnapshot snapshot = EmployeeSnapshot.open(path);
+        Assert.assertEquals(1, snapshot.count());
+        Assert.assertEquals(1, snapshot.findByEmail("deep@gitshah.com").getEmployeeId());
+        Assert.assertFalse(snapshot.contains("will@gitshah.com"));
+        snapshot.close();
+    }
+
+    @Test
+    public void shouldKeepTheEmployeeCounterAlreadyInUse() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.snapshot");
+        EmployeeSnapshot.write(path, Arrays.asList(new EmployeeRecord(1, "deep@gitshah.com", 60000)));
+        final EmployeeSnapshot snapshot = EmployeeSnapshot.open(path);
+        final EmployeeCounter counter = new EmployeeCounter(new EmployeeCountSource() {
+            @Override
+            public long count() {
+                return 5;
+            }
+        });
+
+        final EmployeeService employeeService = new EmployeeService();
+        employeeService.useEmployeeCounter(counter);
+        employeeService.useSnapshot(snapshot);
+
+        //The live count is kept rather than the snapshot's.
+        Assert.assertSame(counter, employeeService.getEmployeeCounter());
+        Assert.assertEquals(5, employeeService.getEmployeeCount());
+        snapshot.close();
+    }
+
+    @Test
+    public void shouldLetTheServiceAnswerFromTheSnapshotUntilEmployeesChange() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("employees.snapshot");
+        EmployeeSnapshot.write(path, Arrays.asList(
+                new EmployeeRecord(1, "deep@gitshah.com", 60000),
+                new EmployeeRecord(2, "will@gitshah.com", 65000)));
+        final EmployeeSnapshot snapshot = EmployeeSnapshot.open(path);
+
+        final EmployeeService employeeService = new EmployeeService();
+        employeeService.useSnapshot(snapshot);
+        Assert.assertEquals(2, employeeService.getEmployeeCount());
+        Assert.assertEquals(60000, employeeService.findEmployeeByEmail("Deep@gitshah.com").getSalary());
+        Assert.assertFalse(employeeService.isEmailCertainlyUnused("will@gitshah.com"));
+        Assert.assertTrue(employeeService.isEmailCertainlyUnused("packt@gitshah.com"));
+
+        //A deleted snapshot employee is no longer found.
+        final Employee will = new Employee("will@gitshah.com") {
+            @Override
+            public boolean delete() {
+                return true;
+            }
+        };
+        employeeService.deleteEmployee(will);
+        Assert.assertNull(employeeService.findEmployeeByEmail("will@gitshah.com"));
+        Assert.assertFalse(employeeService.employeeExists(will));
+        Assert.assertEquals(1, employeeService.getEmployeeCount());
+
+        //An employee saved through the service takes precedence over the snapshot.
+        final Employee deep = new Employee("deep@gitshah.com") {
+            @Override
+            public boolean isNew() {
+                return false;
+            }
+
+            @Override
+            protected void updateFields(int fields) {
+            }
+        };
+        employeeService.saveEmployee(deep);
+        Assert.assertSame(deep, employeeService.findEmployeeByEmail("deep@gitshah.com"));
+        Assert.assertTrue(employeeService.employeeExists(deep));
+        snapshot.close();
+    }
+}
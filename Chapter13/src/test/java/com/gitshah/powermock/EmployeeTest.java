@@ -29,4 +29,44 @@ public class EmployeeTest {
 
         employee.save();
     }
+
+    @Test
+    public void shouldNotWriteAnythingWhenUpdatingACleanEmployee() {
+        final int[] written = new int[1];
+        Employee employee = new Employee("deep@gitshah.com") {
+            @Override
+            protected void updateFields(int fields) {
+                written[0]++;
+            }
+        };
+
+        //Setting the same values does not make the employee dirty.
+        employee.setSalary(0);
+        employee.setEmail("deep@gitshah.com");
+        employee.update();
+
+        Assert.assertFalse(employee.isDirty());
+        Assert.assertEquals(0, written[0]);
+    }
+
+    @Test
+    public void shouldWriteOnlyTheChangedFieldsOnUpdate() {
+        final int[] written = new int[1];
+        Employee employee = new Employee("deep@gitshah.com") {
+            @Override
+            protected void updateFields(int fields) {
+                written[0] = fields;
+            }
+        };
+        employee.setSalary(60000);
+        employee.setEmail("deep.shah@gitshah.com");
+        Assert.assertEquals("deep@gitshah.com", employee.getCleanEmail());
+
+        employee.update();
+
+        Assert.assertEquals(Employee.SALARY | Employee.EMAIL, written[0]);
+        Assert.assertFalse(employee.isDirty(Employee.EMPLOYEE_ID));
+        Assert.assertFalse(employee.isDirty());
+        Assert.assertEquals("deep.shah@gitshah.com", employee.getCleanEmail());
+    }
 }
@@ -0,0 +1,47 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The class that holds all unit tests for
+ * the FrequencySketch class.
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void shouldTakeOneLongPerCacheEntry() {
+        Assert.assertEquals(1024, new FrequencySketch(1000).getWidth());
+        Assert.assertEquals(16, new FrequencySketch(2).getWidth());
+    }
+
+    @Test
+    public void shouldCountAKeyUpToFifteen() {
+        final FrequencySketch sketch = new FrequencySketch(1000);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("deep@gitshah.com");
+        }
+        Assert.assertEquals(5, sketch.frequency("deep@gitshah.com"));
+        Assert.assertEquals(0, sketch.frequency("will@gitshah.com"));
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("deep@gitshah.com");
+        }
+        Assert.assertEquals(15, sketch.frequency("deep@gitshah.com"));
+    }
+
+    @Test
+    public void shouldHalveTheCountsOnceTheSampleIsFull() {
+        final FrequencySketch sketch = new FrequencySketch(2);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment("deep@gitshah.com");
+        }
+        //The 20th addition, ten times the cache size, fills the sample.
+        for (int i = 0; i < 12; i++) {
+            sketch.increment("will@gitshah.com");
+        }
+
+        Assert.assertEquals(4, sketch.frequency("deep@gitshah.com"));
+        Assert.assertEquals(6, sketch.frequency("will@gitshah.com"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.gitshah.powermock;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The class that holds all unit tests for
+ * the LogEmployeeRepository class.
+ */
+public class LogEmployeeRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void stopUsingTheRepository() {
+        Employee.useRepository(null);
+    }
+
+    private static Employee employee(final int employeeId, final String email, final long salary) {
+        final Employee employee = new Employee(email);
+        employee.setEmployeeId(employeeId);
+        employee.setSalary(salary);
+        return employee;
+    }
+
+    @Test
+    public void shouldPersistEmployeesThroughTheEmployeeMethods() throws IOException {
+        final Path log = folder.getRoot().toPath().resolve("employees");
+        final LogEmployeeRepository repository = new LogEmployeeRepository(log);
+        Employee.useRepository(repository);
+
+        final Employee deep = employee(1, "deep@gitshah.com", 60000);
+        Assert.assertTrue(deep.isNew());
+        deep.save();
+        employee(2, "will@gitshah.com", 65000).save();
+        employee(3, "packt@gitshah.com", 70000).save();
+
+        deep.setSalary(62000);
+        deep.save();
+        Employee.giveIncrementOf(10);
+        repository.findById(3).delete();
+
+        Assert.assertFalse(deep.isNew());
+        Assert.assertEquals(2, Employee.count());
+        Assert.assertEquals(68200, repository.findById(1).getSalary());
+        Assert.assertNull(repository.findById(3));
+        repository.close();
+
+        //Simulating a restart by replaying the same log.
+        final LogEmployeeRepository reopened = new LogEmployeeRepository(log);
+        try {
+            Assert.assertEquals(2, reopened.count());
+            Assert.assertEquals("deep@gitshah.com", reopened.findById(1).getEmail());
+            Assert.assertEquals(68200, reopened.findById(1).getSalary());
+            Assert.assertEquals(71500, reopened.findById(2).getSalary());
+            Assert.assertFalse(reopened.findById(2).isDirty());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldFindEmployeesByEmailAfterTheRepositoryIsReopened() throws IOException {
+        final Path log = folder.getRoot().toPath().resolve("employees");
+        final LogEmployeeRepository repository = new LogEmployeeRepository(log);
+        Employee.useRepository(repository);
+        employee(1, "deep@gitshah.com", 60000).save();
+        final Employee will = employee(2, "will@gitshah.com", 65000);
+        will.save();
+        will.setEmail("will.gilbert@gitshah.com");
+        will.save();
+        repository.close();
+
+        //Simulating a restart, the service has seen none of the saved employees.
+        final LogEmployeeRepository reopened = new LogEmployeeRepository(log);
+        Employee.useRepository(reopened);
+        try {
+            final EmployeeService employeeService = new EmployeeService();
+            Assert.assertFalse(employeeService.isEmailCertainlyUnused("Deep@gitshah.com"));
+            Assert.assertTrue(employeeService.employeeExists(new Employee("deep@gitshah.com")));
+            Assert.assertEquals(1, employeeService.findEmployeeByEmail("deep@gitshah.com").getEmployeeId());
+            Assert.assertEquals(2, employeeService.findEmployeeByEmail("will.gilbert@gitshah.com").getEmployeeId());
+            Assert.assertNull(employeeService.findEmployeeByEmail("will@gitshah.com"));
+            Assert.assertTrue(employeeService.isEmailCertainlyUnused("packt@gitshah.com"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldNotAppendAnythingWhenUpdatingACleanEmployee() throws IOException {
+        final LogEmployeeRepository repository = new LogEmployeeRepository(folder.getRoot().toPath().resolve("employees"));
+        Employee.useRepository(repository);
+        try {
+            final Employee deep = employee(1, "deep@gitshah.com", 60000);
+            deep.save();
+            final long size = repository.getLogSize();
+
+            deep.save();
+
+            Assert.assertEquals(size, repository.getLogSize());
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void shouldMarkTheEmployeesOfAWrittenBatchClean() throws IOException {
+        final LogEmployeeRepository repository = new LogEmployeeRepository(folder.getRoot().toPath().resolve("employees"));
+        try {
+            final Employee deep = employee(1, "deep@gitshah.com", 60000);
+            final Employee will = employee(2, "will@gitshah.com", 65000);
+            Assert.assertTrue(deep.isDirty());
+
+            repository.write(Arrays.asList(deep, will));
+
+            Assert.assertFalse(deep.isDirty());
+            Assert.assertFalse(will.isDirty());
+            Assert.assertEquals(60000, repository.findById(1).getSalary());
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void shouldDropARecordCutShortByACrash() throws IOException {
+        final Path log = folder.getRoot().toPath().resolve("employees");
+        final LogEmployeeRepository repository = new LogEmployeeRepository(log);
+        repository.write(Arrays.asList(employee(1, "deep@gitshah.com", 60000), employee(2, null, 65000)));
+        final long size = repository.getLogSize();
+        repository.close();
+
+        //Half a record, as if the process died mid-append.
+        Files.write(log.resolve("0000000000000000.log"), new byte[]{0, 0, 0, 40, 1, 0}, StandardOpenOption.APPEND);
+
+        final LogEmployeeRepository reopened = new LogEmployeeRepository(log);
+        try {
+            Assert.assertEquals(2, reopened.count());
+            Assert.assertNull(reopened.findById(2).getEmail());
+            Assert.assertEquals(size, reopened.getLogSize());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldCompactTheLogOnceEnoughSegmentsWereWritten() throws IOException {
+        final Path log = folder.getRoot().toPath().resolve("employees");
+        final LogEmployeeRepository repository = new LogEmployeeRepository(log, 1024, 4);
+        final Employee deep = employee(1, "deep@gitshah.com", 60000);
+        repository.create(deep);
+        for (int i = 1; i <= 1000; i++) {
+            deep.setSalary(60000 + i);
+            repository.update(deep, Employee.SALARY);
+            Assert.assertTrue(repository.getSegmentCount() < 4);
+        }
+        Assert.assertNull(repository.getLastCompactionFailure());
+        repository.close();
+
+        final LogEmployeeRepository reopened = new LogEmployeeRepository(log, 1024, 4);
+        try {
+            Assert.assertEquals(61000, reopened.findById(1).getSalary());
+        } finally {
+            reopened.close();
+        }
+    }
+}
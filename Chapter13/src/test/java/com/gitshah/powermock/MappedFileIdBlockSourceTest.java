@@ -0,0 +1,82 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * The class that holds all unit tests for
+ * the MappedFileIdBlockSource class.
+ */
+public class MappedFileIdBlockSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldSkipTheUnusedTailOfTheLastBlockAfterARestart() throws Exception {
+        final File file = new File(folder.getRoot(), "employee-id.hwm");
+
+        final MappedFileIdBlockSource source = new MappedFileIdBlockSource(file.toPath());
+        final BlockIdAllocator allocator = new BlockIdAllocator(source, 100);
+        Assert.assertEquals(1, allocator.nextId());
+        Assert.assertEquals(2, allocator.nextId());
+        source.close();
+
+        //Simulating a restart by opening the same file again.
+        final MappedFileIdBlockSource restarted = new MappedFileIdBlockSource(file.toPath());
+        try {
+            Assert.assertEquals(101, restarted.getHighWaterMark());
+            Assert.assertEquals(101, new BlockIdAllocator(restarted, 100).nextId());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    public void shouldStartFromTheGivenIdWhenTheFileIsNew() throws Exception {
+        final File file = new File(folder.getRoot(), "employee-id.hwm");
+
+        final MappedFileIdBlockSource source = new MappedFileIdBlockSource(file.toPath(), 5000);
+        try {
+            Assert.assertEquals(5000, source.reserveBlock(10));
+            Assert.assertEquals(5010, source.reserveBlock(10));
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void shouldStartAfreshFromAFileACrashLeftAllZeros() throws Exception {
+        final File file = folder.newFile("employee-id.hwm");
+        //The file was grown but its header never reached the disk.
+        Files.write(file.toPath(), new byte[16]);
+
+        final MappedFileIdBlockSource source = new MappedFileIdBlockSource(file.toPath(), 5000);
+        try {
+            Assert.assertEquals(5000, source.reserveBlock(10));
+        } finally {
+            source.close();
+        }
+
+        final MappedFileIdBlockSource restarted = new MappedFileIdBlockSource(file.toPath());
+        try {
+            Assert.assertEquals(5010, restarted.getHighWaterMark());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRefuseAFileItDidNotWrite() throws Exception {
+        final File file = folder.newFile("not-a-hwm-file");
+        Files.write(file.toPath(), "hello world, hello".getBytes("UTF-8"));
+
+        new MappedFileIdBlockSource(file.toPath());
+    }
+}
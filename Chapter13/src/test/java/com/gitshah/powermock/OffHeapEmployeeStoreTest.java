@@ -0,0 +1,76 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * The class that holds all unit tests for
+ * the OffHeapEmployeeStore class.
+ */
+public class OffHeapEmployeeStoreTest {
+
+    @Test
+    public void shouldReadAndWriteRecordsInPlaceAcrossChunks() {
+        final OffHeapEmployeeStore store = new OffHeapEmployeeStore(4);
+        for (int i = 0; i < 10; i++) {
+            store.add(i + 1, "employee" + i + "@gitshah.com", 50000 + i);
+        }
+        store.add(new Employee());
+
+        final OffHeapEmployee view = store.view();
+        Assert.assertEquals(11, store.size());
+        Assert.assertEquals(9, view.moveTo(8).getEmployeeId());
+        Assert.assertEquals("employee8@gitshah.com", view.getEmail());
+        Assert.assertNull(view.moveTo(10).getEmail());
+
+        view.moveTo(5).setSalary(90000);
+        Assert.assertEquals(90000, store.getSalary(5));
+        Assert.assertEquals(500045 - 50005 + 90000, store.sumSalaries());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseChunksTooLargeForOneBuffer() {
+        //2^28 records of 16 bytes would overflow the int buffer size.
+        new OffHeapEmployeeStore(1 << 28);
+    }
+
+    @Test
+    public void shouldStoreEveryDistinctEmailOnce() {
+        final OffHeapEmployeeStore store = new OffHeapEmployeeStore();
+        final int first = store.add(1, "deep@gitshah.com", 60000);
+        final int second = store.add(2, "deep@gitshah.com", 65000);
+        store.add(3, "will@gitshah.com", 70000);
+
+        Assert.assertEquals(2, store.getEmailDictionary().size());
+        Assert.assertEquals(store.getEmailCode(first), store.getEmailCode(second));
+        Assert.assertEquals(-1, store.getEmailDictionary().find("packt@gitshah.com"));
+    }
+
+    @Test
+    public void shouldScanTheWholeStoreThroughOneViewWithoutAllocating() {
+        final OffHeapEmployeeStore store = new OffHeapEmployeeStore(1024);
+        for (int i = 0; i < 100000; i++) {
+            store.add(i + 1, "employee" + (i % 100) + "@gitshah.com", 50000 + i % 1000);
+        }
+        final OffHeapEmployee view = store.view();
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        long total = 0;
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        for (int row = 0; row < store.size(); row++) {
+            view.moveTo(row);
+            if (view.getEmployeeId() > 0) {
+                total += view.getSalary();
+            }
+        }
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        Assert.assertEquals(store.sumSalaries(), total);
+        //Allowing for the bytes the allocation counter itself needs.
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
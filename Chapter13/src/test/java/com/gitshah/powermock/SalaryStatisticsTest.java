@@ -0,0 +1,63 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The class that holds all unit tests for
+ * the SalaryStatistics class.
+ */
+public class SalaryStatisticsTest {
+
+    @Test
+    public void shouldKeepCountTotalMinMaxAndMean() {
+        final SalaryStatistics statistics = new SalaryStatistics();
+        statistics.add(60000);
+        statistics.add(65000);
+        statistics.add(80000);
+
+        Assert.assertEquals(3, statistics.getCount());
+        Assert.assertEquals(205000, statistics.getTotal());
+        Assert.assertEquals(60000, statistics.getMin());
+        Assert.assertEquals(80000, statistics.getMax());
+        Assert.assertEquals(68333.33, statistics.getMean(), 0.01);
+    }
+
+    @Test
+    public void shouldForgetRemovedSalaries() {
+        final SalaryStatistics statistics = new SalaryStatistics();
+        statistics.add(60000);
+        statistics.add(65000);
+
+        statistics.remove(65000);
+        //Removing a salary that was never added changes nothing.
+        statistics.remove(99000);
+
+        Assert.assertEquals(1, statistics.getCount());
+        Assert.assertEquals(60000, statistics.getTotal());
+        Assert.assertEquals(60000, statistics.getMax());
+        Assert.assertEquals(60000, statistics.getMedian());
+    }
+
+    @Test
+    public void shouldEstimatePercentilesWithinTwoPercent() {
+        final SalaryStatistics statistics = new SalaryStatistics();
+        for (int salary = 1; salary <= 100000; salary++) {
+            statistics.add(salary);
+        }
+
+        Assert.assertEquals(50000, statistics.getMedian(), 50000 * 0.02);
+        Assert.assertEquals(90000, statistics.getP90(), 90000 * 0.02);
+        Assert.assertEquals(1, statistics.getPercentile(0));
+        Assert.assertEquals(100000, statistics.getPercentile(100));
+    }
+
+    @Test
+    public void shouldReturnZeroWhenEmpty() {
+        final SalaryStatistics statistics = new SalaryStatistics();
+
+        Assert.assertEquals(0, statistics.getMax());
+        Assert.assertEquals(0, statistics.getMean(), 0);
+        Assert.assertEquals(0, statistics.getMedian());
+    }
+}
@@ -0,0 +1,156 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class that holds all unit tests for
+ * the SegmentedEmployeeLog class.
+ */
+public class SegmentedEmployeeLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Replays the log into a map the way the repository does.
+     */
+    private final Map<Integer, EmployeeRecord> replayed = new HashMap<Integer, EmployeeRecord>();
+
+    private final SegmentedEmployeeLog.Visitor visitor = new SegmentedEmployeeLog.Visitor() {
+        @Override
+        public void put(EmployeeRecord record) {
+            replayed.put(record.getEmployeeId(), record);
+        }
+
+        @Override
+        public void delete(int employeeId) {
+            replayed.remove(employeeId);
+        }
+    };
+
+    private Path directory() {
+        return folder.getRoot().toPath().resolve("employees");
+    }
+
+    @Test
+    public void shouldRollToANewSegmentOnceTheActiveOneIsFull() throws IOException {
+        final SegmentedEmployeeLog log = new SegmentedEmployeeLog(directory(), 1024, visitor);
+        for (int i = 1; i <= 100; i++) {
+            log.appendPuts(Collections.singletonList(new EmployeeRecord(i, "employee" + i + "@gitshah.com", 50000)));
+        }
+        log.appendDelete(7);
+        final int segments = log.getSegmentCount();
+        log.close();
+
+        //Every record takes about 50 bytes, so 1KB segments hold about 20.
+        Assert.assertTrue("Segments: " + segments, segments >= 5);
+        new SegmentedEmployeeLog(directory(), 1024, visitor).close();
+        Assert.assertEquals(99, replayed.size());
+        Assert.assertNull(replayed.get(7));
+    }
+
+    @Test
+    public void shouldDropSupersededVersionsWhenCompacting() throws IOException {
+        final SegmentedEmployeeLog log = new SegmentedEmployeeLog(directory(), 4096, visitor);
+        final Map<Integer, EmployeeRecord> live = new HashMap<Integer, EmployeeRecord>();
+        for (int version = 0; version < 100; version++) {
+            final List<EmployeeRecord> batch = new ArrayList<EmployeeRecord>();
+            for (int i = 1; i <= 10; i++) {
+                final EmployeeRecord record = new EmployeeRecord(i, "employee" + i + "@gitshah.com", 50000 + version);
+                batch.add(record);
+                live.put(i, record);
+            }
+            log.appendPuts(batch);
+        }
+        final long sizeBefore = log.getSize();
+
+        log.compact(live.values());
+        log.appendPuts(Collections.singletonList(new EmployeeRecord(1, "deep@gitshah.com", 90000)));
+
+        Assert.assertTrue(log.getSize() * 50 < sizeBefore);
+        Assert.assertEquals(1, log.getSegmentCount());
+        log.close();
+
+        //Reopening replays the snapshot and then the tail written after it.
+        new SegmentedEmployeeLog(directory(), 4096, visitor).close();
+        Assert.assertEquals(10, replayed.size());
+        Assert.assertEquals(50099, replayed.get(2).getSalary());
+        Assert.assertEquals("deep@gitshah.com", replayed.get(1).getEmail());
+    }
+
+    @Test
+    public void shouldDeleteASnapshotLeftHalfWrittenByACrash() throws IOException {
+        final SegmentedEmployeeLog log = new SegmentedEmployeeLog(directory(), 4096, visitor);
+        log.appendPuts(Collections.singletonList(new EmployeeRecord(1, "deep@gitshah.com", 50000)));
+        log.close();
+        //A crash while compacting leaves the temporary snapshot behind.
+        final Path temporary = directory().resolve("0000000000000001.snap.tmp");
+        Files.write(temporary, new byte[] {1, 2, 3});
+
+        new SegmentedEmployeeLog(directory(), 4096, visitor).close();
+
+        Assert.assertFalse(Files.exists(temporary));
+        Assert.assertEquals(1, replayed.size());
+    }
+
+    @Test
+    public void shouldDropABatchCutShortByACrashAsAWhole() throws IOException {
+        final SegmentedEmployeeLog log = new SegmentedEmployeeLog(directory(), 4096, visitor);
+        log.appendPuts(Collections.singletonList(new EmployeeRecord(1, "deep@gitshah.com", 60000)));
+        final long sizeBeforeBatch = log.getSize();
+        final List<EmployeeRecord> batch = new ArrayList<EmployeeRecord>();
+        for (int i = 1; i <= 10; i++) {
+            batch.add(new EmployeeRecord(i, "employee" + i + "@gitshah.com", 66000));
+        }
+        log.appendPuts(batch);
+        final long sizeAfterBatch = log.getSize();
+        log.close();
+
+        //The crash tore the batch after its first few records.
+        final RandomAccessFile segment = new RandomAccessFile(directory().resolve("0000000000000000.log").toFile(), "rw");
+        try {
+            segment.setLength((sizeBeforeBatch + sizeAfterBatch) / 2);
+        } finally {
+            segment.close();
+        }
+
+        final SegmentedEmployeeLog reopened = new SegmentedEmployeeLog(directory(), 4096, visitor);
+        Assert.assertEquals(sizeBeforeBatch, reopened.getSize());
+        reopened.close();
+        Assert.assertEquals(1, replayed.size());
+        Assert.assertEquals(60000, replayed.get(1).getSalary());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRefuseToOpenALogWithACorruptSealedSegment() throws IOException {
+        final SegmentedEmployeeLog log = new SegmentedEmployeeLog(directory(), 1024, visitor);
+        for (int i = 1; i <= 100; i++) {
+            log.appendPuts(Collections.singletonList(new EmployeeRecord(i, "employee" + i + "@gitshah.com", 50000)));
+        }
+        log.close();
+
+        //Flipping a byte inside the first record of the oldest segment.
+        final RandomAccessFile segment = new RandomAccessFile(directory().resolve("0000000000000000.log").toFile(), "rw");
+        try {
+            segment.seek(12);
+            segment.write(0x7F);
+        } finally {
+            segment.close();
+        }
+
+        new SegmentedEmployeeLog(directory(), 1024, visitor);
+    }
+}
@@ -0,0 +1,136 @@
+package com.gitshah.powermock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the embedded employee log.
+ * appendBatch measures writing batches of 100 updated employees through
+ * LogEmployeeRepository, compaction included. The recover benchmarks
+ * measure opening a repository holding 100,000 employees that were each
+ * updated 5 times, once by replaying every version from the segments
+ * and once from a compacted snapshot.
+ * Run with: gradle jmh -Pbenchmarks=SegmentedLog
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentedLogBenchmark {
+
+    private static final int EMPLOYEES = 100000;
+    private static final int VERSIONS = 5;
+    private static final int BATCH_SIZE = 100;
+
+    private Path root;
+    private Path tailOnly;
+    private Path compacted;
+
+    private LogEmployeeRepository appendRepository;
+    private List<Employee> batch;
+    private int nextEmployeeId;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("segmented-log-benchmark");
+        tailOnly = root.resolve("tail-only");
+        compacted = root.resolve("compacted");
+        fill(new LogEmployeeRepository(tailOnly, LogEmployeeRepository.DEFAULT_SEGMENT_SIZE, Integer.MAX_VALUE));
+        final LogEmployeeRepository repository = new LogEmployeeRepository(compacted,
+                LogEmployeeRepository.DEFAULT_SEGMENT_SIZE, Integer.MAX_VALUE);
+        fill(repository);
+        final LogEmployeeRepository reopened = new LogEmployeeRepository(compacted);
+        reopened.compact();
+        reopened.close();
+
+        appendRepository = new LogEmployeeRepository(root.resolve("append"));
+        batch = new ArrayList<Employee>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Employee("employee" + i + "@gitshah.com"));
+        }
+    }
+
+    private static void fill(final LogEmployeeRepository repository) throws IOException {
+        final List<Employee> employees = new ArrayList<Employee>(BATCH_SIZE);
+        for (int version = 0; version < VERSIONS; version++) {
+            for (int first = 1; first <= EMPLOYEES; first += BATCH_SIZE) {
+                employees.clear();
+                for (int id = first; id < first + BATCH_SIZE; id++) {
+                    final Employee employee = new Employee("employee" + id + "@gitshah.com");
+                    employee.setEmployeeId(id);
+                    employee.setSalary(50000 + version);
+                    employees.add(employee);
+                }
+                repository.write(employees);
+            }
+        }
+        repository.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        appendRepository.close();
+        delete(root);
+    }
+
+    private static void delete(final Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            final DirectoryStream<Path> children = Files.newDirectoryStream(path);
+            try {
+                for (Path child : children) {
+                    delete(child);
+                }
+            } finally {
+                children.close();
+            }
+        }
+        Files.delete(path);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int appendBatch() {
+        for (Employee employee : batch) {
+            employee.setEmployeeId(nextEmployeeId++ % EMPLOYEES + 1);
+            employee.setSalary(employee.getSalary() + 1);
+        }
+        appendRepository.write(batch);
+        return nextEmployeeId;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int recoverFromTail() throws IOException {
+        final LogEmployeeRepository repository = new LogEmployeeRepository(tailOnly);
+        repository.close();
+        return repository.count();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int recoverFromSnapshot() throws IOException {
+        final LogEmployeeRepository repository = new LogEmployeeRepository(compacted);
+        repository.close();
+        return repository.count();
+    }
+}
@@ -0,0 +1,177 @@
+package com.gitshah.powermock;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class that holds all unit tests for
+ * the SmtpConnectionPool class, run against a local StubSmtpServer.
+ */
+public class SmtpConnectionPoolTest {
+
+    private StubSmtpServer server;
+    private SmtpConnectionPool pool;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new StubSmtpServer();
+        pool = new SmtpConnectionPool(server.getHost(), server.getPort(), 2, 60000, 1000);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        pool.close();
+        server.stop();
+    }
+
+    @Test
+    public void shouldReuseOneConnectionForConsecutiveWelcomeEmails() {
+        for (int i = 0; i < 3; i++) {
+            new WelcomeEmail(new Employee("employee" + i + "@gitshah.com"), "Welcome!", pool).send();
+        }
+
+        Assert.assertEquals(3, server.getMessages().size());
+        Assert.assertEquals(1, server.getConnectionCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void shouldPipelineABatchOfWelcomeEmailsOverOneConnection() {
+        final List<WelcomeEmailTask> tasks = new ArrayList<WelcomeEmailTask>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(new WelcomeEmailTask(new Employee("employee" + i + "@gitshah.com"), "Welcome!\n.signature"));
+        }
+
+        new SmtpWelcomeEmailSender(pool, WelcomeEmail.FROM).send(tasks);
+
+        Assert.assertEquals(10, server.getMessages().size());
+        Assert.assertEquals(1, server.getConnectionCount());
+        Assert.assertTrue(server.getMessages().get(0).endsWith("\nWelcome!\n.signature\n"));
+    }
+
+    @Test
+    public void shouldReplaceAConnectionThatFailsTheHealthCheck() throws Exception {
+        new WelcomeEmail(new Employee("deep@gitshah.com"), "Welcome!", pool).send();
+        server.dropConnections();
+
+        new WelcomeEmail(new Employee("deep@gitshah.com"), "Welcome!", pool).send();
+
+        Assert.assertEquals(2, server.getMessages().size());
+        Assert.assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void shouldEvictConnectionsPastTheirIdleTimeout() throws Exception {
+        final SmtpConnectionPool shortLived = new SmtpConnectionPool(server.getHost(), server.getPort(), 2, 0, 1000);
+        try {
+            shortLived.release(shortLived.borrow());
+            Assert.assertEquals(1, shortLived.evictIdle());
+            Assert.assertEquals(0, shortLived.getIdleCount());
+        } finally {
+            shortLived.close();
+        }
+    }
+
+    @Test
+    public void shouldNotOpenMoreThanMaxSizeConnections() throws Exception {
+        final SmtpConnection first = pool.borrow();
+        final SmtpConnection second = pool.borrow();
+        try {
+            pool.borrow();
+            Assert.fail("Both connections are borrowed");
+        } catch (IOException expected) {
+            //Expected.
+        } finally {
+            pool.release(first);
+            pool.release(second);
+        }
+        Assert.assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void shouldPipelineOnlyWhenTheServerAdvertisesIt() throws Exception {
+        final SmtpConnection connection = pool.borrow();
+        Assert.assertTrue(connection.isPipelining());
+        pool.release(connection);
+
+        final StubSmtpServer lockStepServer = new StubSmtpServer(false);
+        final SmtpConnectionPool lockStepPool = new SmtpConnectionPool(
+                lockStepServer.getHost(), lockStepServer.getPort(), 1, 60000, 1000);
+        try {
+            final List<WelcomeEmailTask> tasks = new ArrayList<WelcomeEmailTask>();
+            for (int i = 0; i < 3; i++) {
+                tasks.add(new WelcomeEmailTask(new Employee("employee" + i + "@gitshah.com"), "Welcome!"));
+            }
+            new SmtpWelcomeEmailSender(lockStepPool, WelcomeEmail.FROM).send(tasks);
+
+            Assert.assertEquals(3, lockStepServer.getMessages().size());
+            Assert.assertFalse(lockStepServer.wasPipelinedWithoutPermission());
+        } finally {
+            lockStepPool.close();
+            lockStepServer.stop();
+        }
+    }
+
+    @Test
+    public void shouldGiveTheConnectionBackWhenAWelcomeEmailHasAnAddressWithALineBreak() {
+        try {
+            new WelcomeEmail(new Employee("evil@gitshah.com>\r\nRCPT TO:<victim@gitshah.com"), "Welcome!", pool).send();
+            Assert.fail("The address has a line break");
+        } catch (IllegalArgumentException expected) {
+            //Expected.
+        }
+        new WelcomeEmail(new Employee("deep@gitshah.com"), "Welcome!", pool).send();
+
+        Assert.assertEquals(1, server.getMessages().size());
+        Assert.assertEquals(1, pool.getCreatedCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotOpenConnectionsOnceClosed() throws Exception {
+        pool.close();
+        pool.borrow();
+    }
+
+    @Test
+    public void shouldSkipAnAddressThatCouldInjectSmtpCommands() {
+        final List<WelcomeEmailTask> tasks = new ArrayList<WelcomeEmailTask>();
+        tasks.add(new WelcomeEmailTask(new Employee("deep@gitshah.com"), "Welcome!"));
+        tasks.add(new WelcomeEmailTask(new Employee("evil@gitshah.com>\r\nRCPT TO:<victim@gitshah.com"), "Welcome!"));
+        tasks.add(new WelcomeEmailTask(new Employee("will@gitshah.com"), "Welcome!"));
+
+        try {
+            new SmtpWelcomeEmailSender(pool, WelcomeEmail.FROM).send(tasks);
+            Assert.fail("The second address has a line break");
+        } catch (WelcomeEmailBatchException e) {
+            Assert.assertEquals(2, e.getSentCount());
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        Assert.assertEquals(2, server.getMessages().size());
+        //The connection was still good and went back to the pool.
+        Assert.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void shouldReportTheEmailsSentBeforeTheConnectionBroke() {
+        server.dropAfterMessages(2);
+        final List<WelcomeEmailTask> tasks = new ArrayList<WelcomeEmailTask>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new WelcomeEmailTask(new Employee("employee" + i + "@gitshah.com"), "Welcome!"));
+        }
+
+        try {
+            new SmtpWelcomeEmailSender(pool, WelcomeEmail.FROM).send(tasks);
+            Assert.fail("The server dropped the connection");
+        } catch (WelcomeEmailBatchException e) {
+            Assert.assertEquals(2, e.getSentCount());
+        }
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,169 @@
+package com.gitshah.powermock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal SMTP server listening on a local port.
+ * It accepts every message and keeps the bodies in memory
+ * so the tests can check what was relayed and over how many connections.
+ * It answers EHLO, advertising PIPELINING unless told not to,
+ * and remembers whether a client pipelined commands without being allowed to.
+ */
+public class StubSmtpServer {
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> clients = Collections.synchronizedList(new ArrayList<Socket>());
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final boolean pipelining;
+    private final AtomicBoolean pipelinedWithoutPermission = new AtomicBoolean();
+    private volatile int dropAfterMessages = Integer.MAX_VALUE;
+
+    public StubSmtpServer() throws IOException {
+        this(true);
+    }
+
+    public StubSmtpServer(final boolean pipelining) throws IOException {
+        this.pipelining = pipelining;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "stub-smtp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public boolean wasPipelinedWithoutPermission() {
+        return pipelinedWithoutPermission.get();
+    }
+
+    /**
+     * Drops the connection instead of accepting any message past the given number.
+     */
+    public void dropAfterMessages(final int messageCount) {
+        dropAfterMessages = messageCount;
+    }
+
+    public List<String> getMessages() {
+        synchronized (messages) {
+            return new ArrayList<String>(messages);
+        }
+    }
+
+    /**
+     * Drops every open client connection without saying goodbye,
+     * the way a server restart would.
+     */
+    public void dropConnections() throws IOException {
+        synchronized (clients) {
+            for (Socket client : clients) {
+                client.close();
+            }
+            clients.clear();
+        }
+    }
+
+    public void stop() throws IOException {
+        dropConnections();
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket client = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                clients.add(client);
+                final Thread session = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(client);
+                    }
+                }, "stub-smtp-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(final Socket client) {
+        try {
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+            final Writer out = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII);
+            reply(out, "220 stub ESMTP");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String command = line.toUpperCase();
+                if (!pipelining && in.ready()) {
+                    pipelinedWithoutPermission.set(true);
+                }
+                if (command.startsWith("EHLO")) {
+                    out.write("250-stub\r\n");
+                    reply(out, pipelining ? "250 PIPELINING" : "250 8BITMIME");
+                } else if (command.startsWith("DATA")) {
+                    if (messages.size() >= dropAfterMessages) {
+                        break;
+                    }
+                    reply(out, "354 go ahead");
+                    final StringBuilder body = new StringBuilder();
+                    while (!(line = in.readLine()).equals(".")) {
+                        body.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+                    }
+                    messages.add(body.toString());
+                    reply(out, "250 queued");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 bye");
+                    break;
+                } else {
+                    reply(out, "250 ok");
+                }
+            }
+        } catch (Exception e) {
+            //The client or the test went away.
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                //Nothing more we can do.
+            }
+        }
+    }
+
+    private static void reply(final Writer out, final String line) throws IOException {
+        out.write(line);
+        out.write("\r\n");
+        out.flush();
+    }
+}
@@ -0,0 +1,137 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class that holds all unit tests for
+ * the WTinyLfuCache class.
+ */
+public class WTinyLfuCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final WTinyLfuCache.Loader<Integer, String> loader = new WTinyLfuCache.Loader<Integer, String>() {
+        @Override
+        public String load(Integer key) {
+            loads.incrementAndGet();
+            return "employee" + key;
+        }
+    };
+
+    @Test
+    public void shouldLoadAKeyOnceAndServeItFromTheCacheAfterwards() {
+        final WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(loader, 100, 1, TimeUnit.MINUTES);
+
+        Assert.assertEquals("employee7", cache.get(7));
+        Assert.assertEquals("employee7", cache.get(7));
+        Assert.assertEquals("employee7", cache.get(7));
+
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2.0 / 3, cache.getHitRatio(), 0.0001);
+        Assert.assertTrue(cache.getAverageLoadNanos() >= 0);
+    }
+
+    @Test
+    public void shouldReloadAKeyAfterItIsInvalidated() {
+        final WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(loader, 100, 1, TimeUnit.MINUTES);
+        cache.get(7);
+        cache.invalidate(7);
+        cache.get(7);
+
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldNeverHoldMoreThanTheMaximumSize() {
+        final WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(loader, 100, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 1000; i++) {
+            cache.get(i);
+        }
+
+        Assert.assertEquals(100, cache.size());
+        Assert.assertEquals(900, cache.getEvictionCount());
+    }
+
+    @Test
+    public void shouldKeepFrequentlyUsedKeysThroughAScanOfOneOffKeys() {
+        final WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(loader, 100, 1, TimeUnit.MINUTES);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get(i);
+            }
+        }
+        final int loadsBeforeScan = loads.get();
+
+        //A plain LRU would lose all 50 hot keys to this scan.
+        for (int i = 1000; i < 1500; i++) {
+            cache.get(i);
+        }
+        loads.set(0);
+        for (int i = 0; i < 50; i++) {
+            cache.get(i);
+        }
+
+        Assert.assertEquals(50, loadsBeforeScan);
+        Assert.assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void shouldNotCacheAValueThatWasInvalidatedWhileItLoaded() {
+        final List<WTinyLfuCache<Integer, String>> caches = new ArrayList<WTinyLfuCache<Integer, String>>();
+        final WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(
+                new WTinyLfuCache.Loader<Integer, String>() {
+                    @Override
+                    public String load(Integer key) {
+                        //Another thread saves the employee while the stale value is loaded.
+                        caches.get(0).invalidate(key);
+                        return loader.load(key);
+                    }
+                }, 100, 1, TimeUnit.MINUTES);
+        caches.add(cache);
+
+        Assert.assertEquals("employee7", cache.get(7));
+        Assert.assertEquals(0, cache.size());
+        cache.get(7);
+
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldCacheAValueWhileAnotherKeyIsInvalidated() {
+        final List<WTinyLfuCache<Integer, String>> caches = new ArrayList<WTinyLfuCache<Integer, String>>();
+        final WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(
+                new WTinyLfuCache.Loader<Integer, String>() {
+                    @Override
+                    public String load(Integer key) {
+                        //Another thread saves an unrelated employee meanwhile.
+                        caches.get(0).invalidate(key + 1);
+                        return loader.load(key);
+                    }
+                }, 100, 1, TimeUnit.MINUTES);
+        caches.add(cache);
+
+        cache.get(7);
+        cache.get(7);
+
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldReloadAKeyOnceItExpires() throws InterruptedException {
+        final WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(loader, 100, 20, TimeUnit.MILLISECONDS);
+        cache.get(7);
+        Thread.sleep(50);
+        cache.get(7);
+
+        Assert.assertEquals(2, loads.get());
+    }
+}
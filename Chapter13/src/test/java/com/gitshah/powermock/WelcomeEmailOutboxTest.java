@@ -0,0 +1,134 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class that holds all unit tests for
+ * the WelcomeEmailOutbox class.
+ */
+public class WelcomeEmailOutboxTest {
+
+    @Test
+    public void shouldSendEveryQueuedEmailBeforeClosing() throws Exception {
+        final InMemorySmtpSink sink = new InMemorySmtpSink();
+        final WelcomeEmailOutbox outbox = new WelcomeEmailOutbox(sink, 10, 2);
+
+        for (int i = 0; i < 50; i++) {
+            outbox.enqueue(new Employee("employee" + i + "@gitshah.com"), "Welcome!");
+        }
+
+        Assert.assertTrue(outbox.close(5, TimeUnit.SECONDS));
+        Assert.assertEquals(50, sink.getDelivered().size());
+        Assert.assertEquals(50, outbox.getSentCount());
+        Assert.assertEquals(0, outbox.getQueueDepth());
+        Assert.assertTrue(outbox.getDrainRate() > 0);
+    }
+
+    @Test
+    public void shouldCountEmailsTheSenderFailedToSend() throws Exception {
+        final WelcomeEmailSender sender = PowerMockito.mock(WelcomeEmailSender.class);
+        PowerMockito.doThrow(new IllegalStateException()).when(sender).send(Mockito.<WelcomeEmailTask>anyList());
+
+        final WelcomeEmailOutbox outbox = new WelcomeEmailOutbox(sender, 10, 1);
+        outbox.enqueue(new Employee("deep@gitshah.com"), "Welcome!");
+
+        Assert.assertTrue(outbox.close(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, outbox.getFailedCount());
+        Assert.assertEquals(0, outbox.getSentCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotAcceptEmailsOnceClosed() throws Exception {
+        final WelcomeEmailOutbox outbox = new WelcomeEmailOutbox(new InMemorySmtpSink(), 10, 1);
+        outbox.close(5, TimeUnit.SECONDS);
+
+        outbox.enqueue(new Employee("deep@gitshah.com"), "Welcome!");
+    }
+
+    @Test
+    public void shouldEitherSendOrRefuseAnEmailQueuedWhileClosing() throws Exception {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger delivered = new AtomicInteger();
+        final WelcomeEmailOutbox outbox = new WelcomeEmailOutbox(new WelcomeEmailSender() {
+            @Override
+            public void send(List<WelcomeEmailTask> batch) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                delivered.addAndGet(batch.size());
+            }
+        }, 1, 1);
+
+        //The worker is stuck sending the first email and the queue is full with the second.
+        outbox.enqueue(new Employee("employee1@gitshah.com"), "Welcome!");
+        Assert.assertTrue(sending.await(5, TimeUnit.SECONDS));
+        outbox.enqueue(new Employee("employee2@gitshah.com"), "Welcome!");
+
+        final AtomicInteger refused = new AtomicInteger();
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    outbox.enqueue(new Employee("employee3@gitshah.com"), "Welcome!");
+                } catch (IllegalStateException e) {
+                    refused.incrementAndGet();
+                }
+            }
+        });
+        producer.start();
+        final Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    outbox.close(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        closer.start();
+        Thread.sleep(200);
+        release.countDown();
+
+        producer.join(5000);
+        closer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+        //The third email was not silently dropped.
+        Assert.assertEquals(3, delivered.get() + refused.get());
+    }
+
+    @Test
+    public void shouldQueueTheWelcomeEmailInsteadOfSendingItWhileCreatingAnEmployee() throws Exception {
+        final Employee employeeMock = PowerMockito.mock(Employee.class);
+        PowerMockito.when(employeeMock.isNew()).thenReturn(true);
+
+        final InMemorySmtpSink sink = new InMemorySmtpSink();
+        final WelcomeEmailOutbox outbox = new WelcomeEmailOutbox(sink, 10, 1);
+
+        EmployeeIdGenerator.useBlockAllocation(new BlockIdAllocator(new InMemoryIdBlockSource()));
+        try {
+            new EmployeeService(outbox).saveEmployee(employeeMock);
+        } finally {
+            EmployeeIdGenerator.useBlockAllocation(null);
+        }
+        Mockito.verify(employeeMock).create();
+
+        Assert.assertTrue(outbox.close(5, TimeUnit.SECONDS));
+        final List<WelcomeEmailTask> delivered = sink.getDelivered();
+        Assert.assertEquals(1, delivered.size());
+        Assert.assertSame(employeeMock, delivered.get(0).getEmployee());
+        Assert.assertEquals("Welcome to Mocking with PowerMock How-to!", delivered.get(0).getMessage());
+    }
+}
@@ -0,0 +1,52 @@
+package com.gitshah.powermock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing a compiled WelcomeEmailTemplate
+ * rendering into a reused buffer against String.format.
+ * Both return the rendered String, the way EmployeeService uses it.
+ * Run with: gradle jmh -Pbenchmarks=WelcomeEmailTemplate
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WelcomeEmailTemplateBenchmark {
+
+    private final WelcomeEmailTemplate template = WelcomeEmailTemplate.compile(
+            "Welcome {{email}}!\nYour employee id is {{employeeId}} and you have joined {{department}}.");
+    private final StringBuilder buffer = new StringBuilder(256);
+    private Employee employee;
+
+    @Setup
+    public void setUp() {
+        employee = new Employee("deep@gitshah.com");
+        employee.setEmployeeId(90);
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        buffer.setLength(0);
+        return template.render(employee, "Engineering", buffer).toString();
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        return String.format("Welcome %s!\nYour employee id is %d and you have joined %s.",
+                employee.getEmail(), employee.getEmployeeId(), "Engineering");
+    }
+}
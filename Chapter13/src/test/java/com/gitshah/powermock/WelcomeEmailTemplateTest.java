@@ -0,0 +1,52 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The class that holds all unit tests for
+ * the WelcomeEmailTemplate class.
+ */
+public class WelcomeEmailTemplateTest {
+
+    @Test
+    public void shouldRenderThePersonalizedWelcomeMessage() {
+        final Employee employee = new Employee("deep@gitshah.com");
+        employee.setEmployeeId(90);
+
+        final WelcomeEmailTemplate template = WelcomeEmailTemplate.compile(
+                "Welcome {{email}} ({{employeeId}}) to {{ department }}!");
+
+        Assert.assertEquals("Welcome deep@gitshah.com (90) to Engineering!", template.render(employee, "Engineering"));
+    }
+
+    @Test
+    public void shouldAppendToTheGivenBufferSoItCanBeReused() {
+        final WelcomeEmailTemplate template = WelcomeEmailTemplate.compile("Hello {{email}}");
+        final StringBuilder buffer = new StringBuilder();
+
+        template.render(new Employee("deep@gitshah.com"), null, buffer);
+        Assert.assertEquals("Hello deep@gitshah.com", buffer.toString());
+
+        buffer.setLength(0);
+        template.render(new Employee("noreply@packtpub.com"), null, buffer);
+        Assert.assertEquals("Hello noreply@packtpub.com", buffer.toString());
+    }
+
+    @Test
+    public void shouldRenderAnUnknownDepartmentAsEmpty() {
+        final WelcomeEmailTemplate template = WelcomeEmailTemplate.compile("Welcome to {{department}}.");
+
+        Assert.assertEquals("Welcome to .", template.render(new Employee(), null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAnUnknownPlaceholder() {
+        WelcomeEmailTemplate.compile("Hello {{nickname}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAnUnclosedPlaceholder() {
+        WelcomeEmailTemplate.compile("Hello {{email");
+    }
+}
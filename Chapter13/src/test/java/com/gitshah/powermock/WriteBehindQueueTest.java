@@ -0,0 +1,265 @@
+package com.gitshah.powermock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class that holds all unit tests for
+ * the WriteBehindQueue class.
+ */
+public class WriteBehindQueueTest {
+
+    /**
+     * Remembers every batch it was asked to write.
+     */
+    private final List<List<Employee>> batches = Collections.synchronizedList(new ArrayList<List<Employee>>());
+
+    private final EmployeeBatchWriter recordingWriter = new EmployeeBatchWriter() {
+        @Override
+        public void write(List<Employee> employees) {
+            batches.add(new ArrayList<Employee>(employees));
+        }
+    };
+
+    private static Employee employee(final int employeeId) {
+        final Employee employee = new Employee();
+        employee.setEmployeeId(employeeId);
+        return employee;
+    }
+
+    private static void awaitWritten(final WriteBehindQueue queue, final long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (queue.getWrittenCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(count, queue.getWrittenCount());
+    }
+
+    @Test
+    public void shouldCoalesceSavesOfTheSameEmployeeAndFlushAFullBatch() throws InterruptedException {
+        final WriteBehindQueue queue = new WriteBehindQueue(recordingWriter, 100, 10, 1, TimeUnit.MINUTES,
+                WriteBehindQueue.BackpressurePolicy.BLOCK);
+        final Employee deep = employee(1);
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(deep);
+        }
+        for (int i = 2; i <= 10; i++) {
+            queue.enqueue(employee(i));
+        }
+
+        awaitWritten(queue, 10);
+        Assert.assertEquals(1, batches.size());
+        Assert.assertSame(deep, batches.get(0).get(0));
+        Assert.assertEquals(4, queue.getCoalescedCount());
+        queue.close();
+    }
+
+    @Test
+    public void shouldFlushAPartialBatchOnceTheMaximumDelayPassed() throws InterruptedException {
+        final WriteBehindQueue queue = new WriteBehindQueue(recordingWriter, 100, 10, 20, TimeUnit.MILLISECONDS,
+                WriteBehindQueue.BackpressurePolicy.BLOCK);
+        queue.enqueue(employee(1));
+
+        awaitWritten(queue, 1);
+        Assert.assertEquals(0, queue.getPendingCount());
+        queue.close();
+    }
+
+    @Test
+    public void shouldWriteEverythingStillQueuedOnClose() {
+        final WriteBehindQueue queue = new WriteBehindQueue(recordingWriter, 100, 10, 1, TimeUnit.MINUTES,
+                WriteBehindQueue.BackpressurePolicy.BLOCK);
+        queue.enqueue(employee(1));
+        queue.enqueue(employee(2));
+        queue.enqueue(employee(3));
+
+        queue.close();
+
+        Assert.assertEquals(3, queue.getWrittenCount());
+        Assert.assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void shouldRejectSavesWhenFullAndThePolicyIsReject() throws InterruptedException {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final WriteBehindQueue queue = new WriteBehindQueue(new EmployeeBatchWriter() {
+            @Override
+            public void write(List<Employee> employees) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 2, 1, 1, TimeUnit.MINUTES, WriteBehindQueue.BackpressurePolicy.REJECT);
+
+        //The flusher takes the first save and hangs in the writer.
+        queue.enqueue(employee(1));
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        queue.enqueue(employee(2));
+        try {
+            queue.enqueue(employee(3));
+            Assert.fail("Should have rejected the save");
+        } catch (RejectedExecutionException expected) {
+            //The queue holds the save being written and one more.
+        }
+
+        release.countDown();
+        queue.close();
+        Assert.assertEquals(2, queue.getWrittenCount());
+    }
+
+    @Test
+    public void shouldRetryABatchThatFailedToWrite() throws InterruptedException {
+        final WriteBehindQueue queue = new WriteBehindQueue(new EmployeeBatchWriter() {
+            private boolean failed;
+
+            @Override
+            public void write(List<Employee> employees) {
+                if (!failed) {
+                    failed = true;
+                    throw new IllegalStateException("Store unavailable");
+                }
+            }
+        }, 100, 1, 20, TimeUnit.MILLISECONDS, WriteBehindQueue.BackpressurePolicy.BLOCK);
+        queue.enqueue(employee(1));
+
+        awaitWritten(queue, 1);
+        Assert.assertEquals(1, queue.getFailedBatchCount());
+        queue.close();
+    }
+
+    @Test
+    public void shouldBackOffEvenWhileABlockedSaveKeepsWakingTheFlusher() throws InterruptedException {
+        final List<Long> writeNanos = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch failed = new CountDownLatch(1);
+        final WriteBehindQueue queue = new WriteBehindQueue(new EmployeeBatchWriter() {
+            @Override
+            public void write(List<Employee> employees) {
+                writeNanos.add(System.nanoTime());
+                if (writeNanos.size() == 1) {
+                    failed.countDown();
+                    throw new IllegalStateException("Store unavailable");
+                }
+            }
+        }, 1, 1, 200, TimeUnit.MILLISECONDS, WriteBehindQueue.BackpressurePolicy.BLOCK);
+        queue.enqueue(employee(1));
+        Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+        //The queue is full again, this save blocks and notifies while it waits.
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.enqueue(employee(2));
+            }
+        });
+        producer.start();
+
+        awaitWritten(queue, 2);
+        producer.join();
+        final long backOffMillis = TimeUnit.NANOSECONDS.toMillis(writeNanos.get(1) - writeNanos.get(0));
+        Assert.assertTrue("Retried after " + backOffMillis + " ms", backOffMillis >= 190);
+        queue.close();
+    }
+
+    @Test
+    public void shouldMoveASaveToTheDeadLettersAfterTheMaximumAttempts() throws InterruptedException {
+        final List<List<Employee>> attempts = Collections.synchronizedList(new ArrayList<List<Employee>>());
+        final WriteBehindQueue queue = new WriteBehindQueue(new EmployeeBatchWriter() {
+            @Override
+            public void write(List<Employee> employees) {
+                attempts.add(new ArrayList<Employee>(employees));
+                throw new IllegalStateException("Store unavailable");
+            }
+        }, 100, 1, 20, TimeUnit.MILLISECONDS, WriteBehindQueue.BackpressurePolicy.BLOCK, 3);
+        final Employee deep = employee(1);
+        queue.enqueue(deep);
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (queue.getDeadLetterCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(60);
+
+        //Given up on after the third attempt, and not retried since.
+        Assert.assertEquals(3, attempts.size());
+        Assert.assertEquals(0, queue.getPendingCount());
+        Assert.assertEquals(Collections.singletonList(deep), queue.drainDeadLetters());
+        Assert.assertTrue(queue.drainDeadLetters().isEmpty());
+        queue.close();
+    }
+
+    @Test
+    public void shouldOnlyGiveUpOnTheBadSaveOfAFailingBatch() {
+        final Employee bad = employee(2);
+        final WriteBehindQueue queue = new WriteBehindQueue(new EmployeeBatchWriter() {
+            @Override
+            public void write(List<Employee> employees) {
+                if (employees.contains(bad)) {
+                    throw new IllegalStateException("Constraint violated");
+                }
+                batches.add(new ArrayList<Employee>(employees));
+            }
+        }, 100, 4, 1, TimeUnit.MINUTES, WriteBehindQueue.BackpressurePolicy.BLOCK, 2);
+        //Short of a full batch, so only flush writes them.
+        queue.enqueue(employee(1));
+        queue.enqueue(bad);
+        queue.enqueue(employee(3));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                queue.flush();
+                Assert.fail("The bad save fails every time");
+            } catch (IllegalStateException expected) {
+                //Expected.
+            }
+        }
+
+        //The healthy saves of the batch were written one by one right away.
+        Assert.assertEquals(2, queue.getWrittenCount());
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals(Collections.singletonList(bad), queue.drainDeadLetters());
+        Assert.assertEquals(0, queue.getPendingCount());
+        queue.close();
+    }
+
+    @Test
+    public void shouldRefuseToQueueAnEmployeeWithoutAnId() {
+        final WriteBehindQueue queue = new WriteBehindQueue(recordingWriter, 100, 10, 1, TimeUnit.MINUTES,
+                WriteBehindQueue.BackpressurePolicy.BLOCK);
+        try {
+            queue.enqueue(new Employee());
+            Assert.fail("Should have refused an employee without an id");
+        } catch (IllegalArgumentException expected) {
+            //It would fail every batch it was written in.
+        }
+
+        queue.enqueue(employee(1));
+        queue.close();
+        Assert.assertEquals(1, queue.getWrittenCount());
+    }
+
+    @Test
+    public void shouldQueueEmployeeSavesOnceWriteBehindIsInUse() {
+        final WriteBehindQueue queue = new WriteBehindQueue(recordingWriter, 100, 10, 1, TimeUnit.MINUTES,
+                WriteBehindQueue.BackpressurePolicy.BLOCK);
+        Employee.useWriteBehind(queue);
+        try {
+            employee(1).save();
+            Assert.assertEquals(1, queue.getPendingCount());
+        } finally {
+            Employee.useWriteBehind(null);
+            queue.close();
+        }
+        Assert.assertEquals(1, queue.getWrittenCount());
+    }
+}